@@ -0,0 +1,73 @@
+import java.util.SplittableRandom;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongFunction;
+import java.util.random.RandomGenerator;
+
+import percolation.jmh.Workloads;
+
+/**
+ * the classes of the percolation module behind percolation.jmh.Workloads,
+ * for the JMH benchmarks
+ */
+public class PercolationWorkloads implements Workloads {
+
+    @Override
+    public Grid grid(int N) {
+        final Percolation perc = new Percolation(N);
+        return new Grid() {
+            @Override
+            public void open(int i, int j) {
+                perc.open(i, j);
+            }
+
+            @Override
+            public boolean isFull(int i, int j) {
+                return perc.isFull(i, j);
+            }
+
+            @Override
+            public boolean percolates() {
+                return perc.percolates();
+            }
+
+            @Override
+            public void reset() {
+                perc.reset();
+            }
+        };
+    }
+
+    @Override
+    public DoubleSupplier trials(int N, String strategy, String rng,
+            long seed) {
+        final PercolationStats.Trial trial = PercolationStats
+                .siteTrials(N, N, false,
+                        PercolationStats.Strategy.valueOf(strategy))
+                .get();
+        final LongFunction<RandomGenerator> generators = PercolationStats
+                .generators(rng);
+        final SplittableRandom seeds = new SplittableRandom(seed);
+        return () -> trial.run(generators.apply(seeds.nextLong()));
+    }
+
+    @Override
+    public double stats(int N, int T, long seed, int threads,
+            String strategy) {
+        return new PercolationStats(N, T, seed, threads,
+                PercolationStats.Strategy.valueOf(strategy)).mean();
+    }
+
+    @Override
+    public long trialBytes(int N, String strategy) {
+        long sites = (long) N * N;
+        long grid = 4 * sites + sites / 8; // union-find and open bits
+        switch (PercolationStats.Strategy.valueOf(strategy)) {
+        case PERMUTATION:
+            return grid + 4 * sites; // site order
+        case BISECTION:
+            return 8 * sites + sites / 4; // order, stack, two bit sets
+        default:
+            return grid;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package percolation.jmh;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Percolation.open, isFull and percolates on N-by-N grids
+ * 
+ * open() goes through a random permutation of the sites and resets the grid
+ * once all are open, so the reset is part of its cost (1 call in N^2). The
+ * queries are asked at random sites of a grid opened in random order until
+ * it percolates. Each operation is measured both as throughput and as
+ * sampled single-operation times, whose percentiles JMH reports; the gc
+ * profiler (-prof gc) adds the allocation rate.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class GridBenchmark {
+
+    static final Workloads WORKLOADS = Workloads.load();
+    static final long SEED = 20151003L;
+    private static final int QUERIES = 1 << 12; // power of two
+
+    /**
+     * a grid and the order in which open() visits its sites
+     */
+    @State(Scope.Thread)
+    public static class Opening {
+        @Param({ "100", "1000", "10000" })
+        int N;
+
+        Workloads.Grid grid;
+        int[] order;
+        int next;
+
+        @Setup
+        public void setUp() {
+            grid = WORKLOADS.grid(N);
+            order = permutation(N * N, SEED);
+            next = 0;
+        }
+    }
+
+    /**
+     * a grid at its percolation threshold and random sites to ask about
+     */
+    @State(Scope.Thread)
+    public static class Percolating {
+        @Param({ "100", "1000", "10000" })
+        int N;
+
+        Workloads.Grid grid;
+        int[] rows = new int[QUERIES];
+        int[] cols = new int[QUERIES];
+        int next;
+
+        @Setup
+        public void setUp() {
+            grid = WORKLOADS.grid(N);
+            int[] order = permutation(N * N, SEED);
+            for (int k = 0; !grid.percolates(); ++k) {
+                grid.open(order[k] / N + 1, order[k] % N + 1);
+            }
+            SplittableRandom random = new SplittableRandom(SEED);
+            for (int k = 0; k < QUERIES; ++k) {
+                rows[k] = random.nextInt(1, N + 1);
+                cols[k] = random.nextInt(1, N + 1);
+            }
+        }
+    }
+
+    @Benchmark
+    public void open(Opening s) {
+        if (s.next == s.order.length) {
+            s.grid.reset();
+            s.next = 0;
+        }
+        int site = s.order[s.next++];
+        s.grid.open(site / s.N + 1, site % s.N + 1);
+    }
+
+    @Benchmark
+    public boolean isFull(Percolating s) {
+        int k = s.next++ & (QUERIES - 1);
+        return s.grid.isFull(s.rows[k], s.cols[k]);
+    }
+
+    @Benchmark
+    public boolean percolates(Percolating s) {
+        return s.grid.percolates();
+    }
+
+    /**
+     * random permutation of 0..n-1 (Fisher-Yates)
+     */
+    static int[] permutation(int n, long seed) {
+        int[] order = new int[n];
+        for (int k = 0; k < n; ++k) {
+            order[k] = k;
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int k = n - 1; k > 0; --k) {
+            int r = random.nextInt(k + 1);
+            int t = order[k];
+            order[k] = order[r];
+            order[r] = t;
+        }
+        return order;
+    }
+}
@@ -0,0 +1,68 @@
+package percolation.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PercolationStats end to end: one new PercolationStats(N, T, seed,
+ * threads, strategy) per operation, with a new seed each time
+ * 
+ * threads = 0 uses every processor, but no more worker threads than there
+ * are trial grids fitting in half of the heap (each worker allocates its
+ * own); the count used is printed at setup. At N = 10000 a PERMUTATION grid
+ * takes about 800 MB, so the fork's 3 GB heap allows a single worker; give
+ * it more with -jvmArgsAppend -Xmx.... A trial there takes tens of seconds,
+ * so an operation takes minutes and an iteration is a single operation.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Thread)
+public class StatsBenchmark {
+
+    @Param({ "100", "1000", "10000" })
+    int N;
+
+    @Param({ "20" })
+    int T;
+
+    @Param({ "0" })
+    int threads;
+
+    @Param({ "PERMUTATION" })
+    String strategy;
+
+    int workers;
+    long seed;
+
+    @Setup
+    public void setUp() {
+        workers = threads;
+        if (workers <= 0) {
+            long fit = Runtime.getRuntime().maxMemory() / 2
+                    / GridBenchmark.WORKLOADS.trialBytes(N, strategy);
+            workers = (int) Math.max(1, Math.min(
+                    Runtime.getRuntime().availableProcessors(), fit));
+        }
+        System.out.println("N = " + N + ": " + workers + " worker threads");
+        seed = GridBenchmark.SEED;
+    }
+
+    @Benchmark
+    public double stats() {
+        return GridBenchmark.WORKLOADS.stats(N, T, seed++, workers, strategy);
+    }
+}
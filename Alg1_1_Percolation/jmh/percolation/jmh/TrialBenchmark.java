@@ -0,0 +1,58 @@
+package percolation.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * one PercolationStats threshold trial per operation, for each strategy and
+ * random generator, on N-by-N grids; the trial's grid is allocated once and
+ * reset, and each trial draws from a generator of its own, as within a
+ * PercolationStats worker (rng names a java.util.random algorithm, as the
+ * rng= option of PercolationStats does)
+ * 
+ * A trial at N = 10000 takes tens of seconds, so there an iteration is a
+ * single trial; narrow the run with -p N=..., -p strategy=... or -p rng=....
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Thread)
+public class TrialBenchmark {
+
+    @Param({ "100", "1000", "10000" })
+    int N;
+
+    @Param({ "REJECTION", "PERMUTATION", "BISECTION" })
+    String strategy;
+
+    @Param({ "SplittableRandom", "Xoshiro256PlusPlus", "L64X128MixRandom",
+            "L64X256MixRandom", "L32X64MixRandom", "Random" })
+    String rng;
+
+    DoubleSupplier trials;
+
+    @Setup
+    public void setUp() {
+        trials = GridBenchmark.WORKLOADS.trials(N, strategy, rng,
+                GridBenchmark.SEED);
+    }
+
+    @Benchmark
+    public double trial() {
+        return trials.getAsDouble();
+    }
+}
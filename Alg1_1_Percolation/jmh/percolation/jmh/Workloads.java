@@ -0,0 +1,87 @@
+package percolation.jmh;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * the percolation module as seen from the benchmarks
+ * 
+ * JMH refuses benchmark classes in the default package, and a class in a
+ * named package cannot refer to the default-package classes of the module,
+ * so the benchmarks reach them through this interface. It is implemented by
+ * PercolationWorkloads in the default package and loaded by name; each call
+ * site sees a single implementation, which the JIT inlines.
+ */
+public interface Workloads {
+
+    /**
+     * an N-by-N Percolation
+     */
+    interface Grid {
+        void open(int i, int j);
+
+        boolean isFull(int i, int j);
+
+        boolean percolates();
+
+        void reset();
+    }
+
+    /**
+     * a new N-by-N Percolation, all sites blocked
+     * 
+     * @param N
+     * @return
+     */
+    Grid grid(int N);
+
+    /**
+     * threshold trials on an N-by-N grid with the named strategy: each call
+     * runs one trial on a grid allocated once, drawing from a new generator
+     * made by PercolationStats.generators(rng) from the next seed of a
+     * SplittableRandom(seed), and returns its threshold
+     * 
+     * @param N
+     * @param strategy
+     * @param rng
+     * @param seed
+     * @return
+     */
+    DoubleSupplier trials(int N, String strategy, String rng, long seed);
+
+    /**
+     * mean of a new PercolationStats(N, T, seed, threads, strategy)
+     * 
+     * @param N
+     * @param T
+     * @param seed
+     * @param threads
+     * @param strategy
+     * @return
+     */
+    double stats(int N, int T, long seed, int threads, String strategy);
+
+    /**
+     * approximate heap bytes taken by the grid and buffers of one trial on
+     * an N-by-N grid with the named strategy (one per PercolationStats
+     * worker thread)
+     * 
+     * @param N
+     * @param strategy
+     * @return
+     */
+    long trialBytes(int N, String strategy);
+
+    /**
+     * the implementation in the default package
+     * 
+     * @return
+     */
+    static Workloads load() {
+        try {
+            return (Workloads) Class.forName("PercolationWorkloads")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
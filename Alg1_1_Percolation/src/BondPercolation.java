@@ -0,0 +1,170 @@
+/**
+ * bond percolation on an N-by-N grid: every site is present and the bonds
+ * between neighbouring sites open independently; the system percolates when
+ * the top row is joined to the bottom row through open bonds
+ * 
+ * Horizontal bond (i, j) joins site (i, j) to (i, j + 1), vertical bond
+ * (i, j) joins (i, j) to (i + 1, j). Their open state is kept in two packed
+ * bit sets; connectivity uses the same PercolationUF as Percolation.
+ */
+public class BondPercolation {
+
+    private int gridSize;
+    private LongBitSet horizontal;
+    private LongBitSet vertical;
+    private PercolationUF uf;
+    private int openBonds;
+
+    /**
+     * create N-by-N grid, with all bonds closed (the 2N(N - 1) bonds are
+     * numbered with ints, so N * N must be at most Integer.MAX_VALUE / 2)
+     * 
+     * @param N
+     */
+    public BondPercolation(int N) {
+        if (N <= 0 || (long) N * N > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException();
+        }
+        gridSize = N;
+        horizontal = new LongBitSet(N * (N - 1));
+        vertical = new LongBitSet((N - 1) * N);
+        uf = new PercolationUF(N * N);
+        reset();
+    }
+
+    /**
+     * close all bonds again, keeping the allocated storage
+     */
+    public void reset() {
+        horizontal.clear();
+        vertical.clear();
+        uf.reset();
+        openBonds = 0;
+        for (int j = 0; j < gridSize; ++j) {
+            uf.connectTop(j);
+            uf.connectBottom((gridSize - 1) * gridSize + j);
+        }
+    }
+
+    /**
+     * number of bonds, horizontal ones first
+     * 
+     * @return
+     */
+    public int bonds() {
+        return 2 * gridSize * (gridSize - 1);
+    }
+
+    /**
+     * open the horizontal bond between (row i, column j) and (i, j + 1)
+     * 
+     * @param i
+     * @param j
+     */
+    public void openHorizontal(int i, int j) {
+        if (i < 1 || j < 1 || i > gridSize || j > gridSize - 1) {
+            throw new java.lang.IndexOutOfBoundsException();
+        }
+        openBond((i - 1) * (gridSize - 1) + (j - 1));
+    }
+
+    /**
+     * open the vertical bond between (row i, column j) and (i + 1, j)
+     * 
+     * @param i
+     * @param j
+     */
+    public void openVertical(int i, int j) {
+        if (i < 1 || j < 1 || i > gridSize - 1 || j > gridSize) {
+            throw new java.lang.IndexOutOfBoundsException();
+        }
+        openBond(horizontal.size() + (i - 1) * gridSize + (j - 1));
+    }
+
+    /**
+     * open bond b, where bonds are numbered row by row, horizontal bonds
+     * first and then vertical ones
+     * 
+     * @param b
+     */
+    public void openBond(int b) {
+        final int H = horizontal.size();
+        if (b < 0 || b >= H + vertical.size()) {
+            throw new java.lang.IndexOutOfBoundsException();
+        }
+        if (b < H) {
+            if (!horizontal.set(b))
+                return;
+            int X = b / (gridSize - 1);
+            int Y = b - X * (gridSize - 1);
+            int XY = X * gridSize + Y;
+            uf.union(XY, XY + 1);
+        } else {
+            if (!vertical.set(b - H))
+                return;
+            int XY = b - H;
+            uf.union(XY, XY + gridSize);
+        }
+        ++openBonds;
+    }
+
+    /**
+     * is the horizontal bond between (row i, column j) and (i, j + 1) open?
+     * 
+     * @param i
+     * @param j
+     * @return
+     */
+    public boolean isOpenHorizontal(int i, int j) {
+        if (i < 1 || j < 1 || i > gridSize || j > gridSize - 1) {
+            throw new java.lang.IndexOutOfBoundsException();
+        }
+        return horizontal.get((i - 1) * (gridSize - 1) + (j - 1));
+    }
+
+    /**
+     * is the vertical bond between (row i, column j) and (i + 1, j) open?
+     * 
+     * @param i
+     * @param j
+     * @return
+     */
+    public boolean isOpenVertical(int i, int j) {
+        if (i < 1 || j < 1 || i > gridSize - 1 || j > gridSize) {
+            throw new java.lang.IndexOutOfBoundsException();
+        }
+        return vertical.get((i - 1) * gridSize + (j - 1));
+    }
+
+    /**
+     * is site (row i, column j) connected to the top row?
+     * 
+     * @param i
+     * @param j
+     * @return
+     */
+    public boolean isFull(int i, int j) {
+        if (i < 1 || j < 1 || i > gridSize || j > gridSize) {
+            throw new java.lang.IndexOutOfBoundsException();
+        }
+        return uf.connectedToTop((i - 1) * gridSize + (j - 1));
+    }
+
+    /**
+     * number of open bonds
+     * 
+     * @return
+     */
+    public int numberOfOpenBonds() {
+        return openBonds;
+    }
+
+    /**
+     * does the system percolate?
+     * 
+     * @return
+     */
+    public boolean percolates() {
+        return uf.spans();
+    }
+}
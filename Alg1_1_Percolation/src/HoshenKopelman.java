@@ -0,0 +1,366 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * cluster sizes of a site-percolation grid by Hoshen-Kopelman labeling
+ * 
+ * Rows are fed one at a time. Only the labels of the previous and the
+ * current row are kept, in a label union-find of at most 2C + 1 entries
+ * that is compacted after every row: clusters that do not reach the new row
+ * are complete, so their sizes go into the histogram and their labels are
+ * reused. Memory is therefore O(C) plus the histogram, whatever the number
+ * of rows.
+ * 
+ * Clusters touching both the first and the last row are counted as
+ * spanning; the mean cluster size sum(s^2) / sum(s) is taken over the other
+ * (finite) clusters, as usual in percolation theory.
+ */
+public class HoshenKopelman {
+
+    private static final int TOP = 1;
+    private static final int BOTTOM = 2;
+
+    private final int cols;
+    private final boolean wrap;
+
+    // labels of the previous and current row, -1 for blocked sites
+    private int[] prev;
+    private int[] cur;
+
+    // label union-find, reset to fresh labels 0..used-1 after each row
+    private int[] parent;
+    private long[] size;
+    private int[] flags;
+    private int used;
+
+    // scratch for the compaction step
+    private int[] remap;
+    private int[] nextParent;
+    private long[] nextSize;
+    private int[] nextFlags;
+
+    private boolean first = true;
+    private boolean finished;
+
+    // sizes up to cols counted in an array, larger ones in a map
+    private final long[] small;
+    private final TreeMap<Long, Long> large = new TreeMap<Long, Long>();
+    private long clusters;
+    private long spanning;
+    private long largest;
+    private double finiteSum;
+    private double finiteSquares;
+
+    /**
+     * prepare to label rows of C sites; if wrap is set, the first and last
+     * site of a row are neighbours
+     * 
+     * @param C
+     * @param wrap
+     */
+    public HoshenKopelman(int C, boolean wrap) {
+        if (C <= 0) {
+            throw new IllegalArgumentException();
+        }
+        cols = C;
+        this.wrap = wrap;
+        prev = new int[C];
+        cur = new int[C];
+        Arrays.fill(prev, -1);
+        int capacity = 2 * C + 1;
+        parent = new int[capacity];
+        size = new long[capacity];
+        flags = new int[capacity];
+        remap = new int[capacity];
+        nextParent = new int[capacity];
+        nextSize = new long[capacity];
+        nextFlags = new int[capacity];
+        small = new long[C + 1];
+    }
+
+    /**
+     * label all open sites of p
+     * 
+     * @param p
+     * @return
+     */
+    public static HoshenKopelman of(Percolation p) {
+        HoshenKopelman hk = new HoshenKopelman(p.cols(), p.wraps());
+        boolean[] row = new boolean[p.cols()];
+        for (int i = 1; i <= p.rows(); ++i) {
+            for (int j = 1; j <= p.cols(); ++j) {
+                row[j - 1] = p.isOpen(i, j);
+            }
+            hk.addRow(row);
+        }
+        hk.finish();
+        return hk;
+    }
+
+    /**
+     * label the next row; open[j] tells whether its j-th site is open
+     * 
+     * @param open
+     */
+    public void addRow(boolean[] open) {
+        if (finished) {
+            throw new IllegalStateException();
+        }
+        if (open.length != cols) {
+            throw new IllegalArgumentException();
+        }
+        for (int j = 0; j < cols; ++j) {
+            if (!open[j]) {
+                cur[j] = -1;
+                continue;
+            }
+            int left = j > 0 ? cur[j - 1] : -1;
+            int up = prev[j];
+            int label;
+            if (left < 0 && up < 0) {
+                label = used++;
+                parent[label] = label;
+                size[label] = 0;
+                flags[label] = first ? TOP : 0;
+            } else if (up < 0) {
+                label = find(left);
+            } else if (left < 0) {
+                label = find(up);
+            } else {
+                label = union(left, up);
+            }
+            ++size[label];
+            cur[j] = label;
+        }
+        if (wrap && cols > 1 && cur[0] >= 0 && cur[cols - 1] >= 0) {
+            union(cur[0], cur[cols - 1]);
+        }
+        first = false;
+        compact();
+    }
+
+    /**
+     * declare the last row added to be the bottom row and record the
+     * clusters still open
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        for (int j = 0; j < cols; ++j) {
+            if (prev[j] >= 0) {
+                flags[prev[j]] |= BOTTOM;
+            }
+        }
+        for (int l = 0; l < used; ++l) {
+            record(size[l], flags[l]);
+        }
+        used = 0;
+    }
+
+    /**
+     * number of clusters
+     * 
+     * @return
+     */
+    public long clusters() {
+        return clusters;
+    }
+
+    /**
+     * number of clusters joining the first row to the last
+     * 
+     * @return
+     */
+    public long spanningClusters() {
+        return spanning;
+    }
+
+    /**
+     * size of the largest cluster
+     * 
+     * @return
+     */
+    public long largest() {
+        return largest;
+    }
+
+    /**
+     * mean cluster size sum(s^2) / sum(s) over non-spanning clusters, i.e.
+     * the expected size of the cluster holding a random open site outside
+     * the spanning clusters; 0 if there is none
+     * 
+     * @return
+     */
+    public double meanClusterSize() {
+        return finiteSum == 0 ? 0 : finiteSquares / finiteSum;
+    }
+
+    /**
+     * number of clusters of exactly s sites
+     * 
+     * @param s
+     * @return
+     */
+    public long count(long s) {
+        if (s <= 0) {
+            return 0;
+        }
+        if (s < small.length) {
+            return small[(int) s];
+        }
+        Long n = large.get(s);
+        return n == null ? 0 : n;
+    }
+
+    /**
+     * cluster-size histogram as {size, count} pairs by increasing size
+     * 
+     * @return
+     */
+    public long[][] histogram() {
+        int distinct = large.size();
+        for (int s = 1; s < small.length; ++s) {
+            if (small[s] != 0) {
+                ++distinct;
+            }
+        }
+        long[][] h = new long[distinct][];
+        int k = 0;
+        for (int s = 1; s < small.length; ++s) {
+            if (small[s] != 0) {
+                h[k++] = new long[] { s, small[s] };
+            }
+        }
+        for (Map.Entry<Long, Long> e : large.entrySet()) {
+            h[k++] = new long[] { e.getKey(), e.getValue() };
+        }
+        return h;
+    }
+
+    private int find(int l) {
+        while (parent[l] != l) {
+            parent[l] = parent[parent[l]];
+            l = parent[l];
+        }
+        return l;
+    }
+
+    private int union(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra == rb) {
+            return ra;
+        }
+        if (size[ra] < size[rb]) {
+            int t = ra;
+            ra = rb;
+            rb = t;
+        }
+        parent[rb] = ra;
+        size[ra] += size[rb];
+        flags[ra] |= flags[rb];
+        return ra;
+    }
+
+    /**
+     * renumber the roots seen in the current row 0..k-1, record the clusters
+     * that ended in the previous row and make the current row the previous
+     */
+    private void compact() {
+        Arrays.fill(remap, 0, used, -1);
+        int next = 0;
+        for (int j = 0; j < cols; ++j) {
+            if (cur[j] < 0) {
+                continue;
+            }
+            int root = find(cur[j]);
+            if (remap[root] < 0) {
+                remap[root] = next;
+                nextParent[next] = next;
+                nextSize[next] = size[root];
+                nextFlags[next] = flags[root];
+                ++next;
+            }
+            cur[j] = remap[root];
+        }
+        for (int l = 0; l < used; ++l) {
+            if (parent[l] == l && remap[l] < 0) {
+                record(size[l], flags[l]);
+            }
+        }
+
+        int[] ti = parent;
+        parent = nextParent;
+        nextParent = ti;
+        long[] tl = size;
+        size = nextSize;
+        nextSize = tl;
+        ti = flags;
+        flags = nextFlags;
+        nextFlags = ti;
+        used = next;
+
+        ti = prev;
+        prev = cur;
+        cur = ti;
+    }
+
+    private void record(long s, int f) {
+        ++clusters;
+        if (s > largest) {
+            largest = s;
+        }
+        if (s < small.length) {
+            ++small[(int) s];
+        } else {
+            Long n = large.get(s);
+            large.put(s, n == null ? 1 : n + 1);
+        }
+        if (f == (TOP | BOTTOM)) {
+            ++spanning;
+        } else {
+            finiteSum += s;
+            finiteSquares += (double) s * s;
+        }
+    }
+
+    /**
+     * test client: cluster statistics of an N-by-N grid with sites open with
+     * probability p
+     * 
+     * usage: HoshenKopelman N p [seed]
+     * 
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length < 2)
+            throw new java.lang.IllegalArgumentException();
+
+        int N = Integer.parseInt(args[0]);
+        double p = Double.parseDouble(args[1]);
+        SplittableRandom random = new SplittableRandom(
+                args.length > 2 ? Long.parseLong(args[2]) : 0L);
+
+        // stream the rows straight in: no N-by-N grid is ever built
+        HoshenKopelman hk = new HoshenKopelman(N, false);
+        boolean[] row = new boolean[N];
+        for (int i = 0; i < N; ++i) {
+            for (int j = 0; j < N; ++j) {
+                row[j] = random.nextDouble() < p;
+            }
+            hk.addRow(row);
+        }
+        hk.finish();
+
+        StdOut.println("clusters                = " + hk.clusters());
+        StdOut.println("spanning clusters       = " + hk.spanningClusters());
+        StdOut.println("largest cluster         = " + hk.largest());
+        StdOut.println("mean cluster size       = " + hk.meanClusterSize());
+    }
+}
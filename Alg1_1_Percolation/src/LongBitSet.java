@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+/**
+ * fixed-size bit set packed 64 bits to a long
+ * 
+ * Unlike java.util.BitSet it never grows and exposes its words, so callers
+ * can scan or combine whole words at a time.
+ */
+public class LongBitSet {
+
+    private final long[] words;
+    private final int size;
+
+    /**
+     * create a set of n bits, all clear
+     * 
+     * @param n
+     */
+    public LongBitSet(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException();
+        }
+        size = n;
+        words = new long[wordCount(n)];
+    }
+
+    /**
+     * number of longs needed to hold n bits
+     * 
+     * @param n
+     * @return
+     */
+    public static int wordCount(int n) {
+        return (n + 63) >>> 6;
+    }
+
+    /**
+     * number of bits
+     * 
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * is bit i set?
+     * 
+     * @param i
+     * @return
+     */
+    public boolean get(int i) {
+        return (words[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * set bit i
+     * 
+     * @param i
+     * @return true if the bit was clear before
+     */
+    public boolean set(int i) {
+        int w = i >>> 6;
+        long before = words[w];
+        long after = before | (1L << i);
+        words[w] = after;
+        return before != after;
+    }
+
+    /**
+     * clear bit i
+     * 
+     * @param i
+     */
+    public void clear(int i) {
+        words[i >>> 6] &= ~(1L << i);
+    }
+
+    /**
+     * clear all bits
+     */
+    public void clear() {
+        Arrays.fill(words, 0L);
+    }
+
+    /**
+     * number of set bits
+     * 
+     * @return
+     */
+    public int cardinality() {
+        int count = 0;
+        for (long w : words) {
+            count += Long.bitCount(w);
+        }
+        return count;
+    }
+
+    /**
+     * the w-th word, holding bits [64 * w, 64 * w + 63]
+     * 
+     * @param w
+     * @return
+     */
+    public long word(int w) {
+        return words[w];
+    }
+
+    /**
+     * number of words
+     * 
+     * @return
+     */
+    public int words() {
+        return words.length;
+    }
+
+    /**
+     * approximate heap size of this set in bytes
+     * 
+     * @return
+     */
+    public long memoryFootprint() {
+        return 16 + 16 + 8L * words.length;
+    }
+}
@@ -0,0 +1,503 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Percolation with the open-site bits and the union-find parent array kept
+ * in memory-mapped files instead of on the heap, for grids of up to ~10^10
+ * sites (N = 100000) on a machine with far less RAM than the 8 1/8 bytes per
+ * site the files take: the operating system pages the parts in use.
+ * 
+ * The public API is that of Percolation (without setMetrics), plus close()
+ * and openSiteCount(). Sites are indexed by long internally; the int
+ * numberOfOpenSites() throws once the count no longer fits, and
+ * openAll(long[]) reaches the sites that openAll(int[]) cannot. A union-find
+ * entry is positive for a child (parent index + 1) and otherwise minus
+ * (rank << 2 | flags) for a root, so the zero-filled file of a new grid is
+ * already R * C singleton roots and needs no initialisation pass.
+ */
+public class MappedPercolation implements Closeable {
+
+    private static final long TOP = 1;
+    private static final long BOTTOM = 2;
+    private static final long FLAGS = TOP | BOTTOM;
+
+    private final int rows;
+    private final int cols;
+    private final boolean wrap;
+    private final MappedLongs grid;
+    private final MappedLongs parent;
+    private long openSites;
+    private boolean spans;
+    private boolean closed;
+
+    /**
+     * create N-by-N grid, with all sites blocked, backed by files in the
+     * default temporary directory
+     * 
+     * @param N
+     */
+    public MappedPercolation(int N) {
+        this(N, N, false, null);
+    }
+
+    /**
+     * create N-by-N grid, with all sites blocked, backed by files in dir
+     * (the default temporary directory if null); the files are deleted by
+     * close()
+     * 
+     * @param N
+     * @param dir
+     */
+    public MappedPercolation(int N, Path dir) {
+        this(N, N, false, dir);
+    }
+
+    /**
+     * create R-by-C grid, with all sites blocked, backed by files in the
+     * default temporary directory; if wrap is set, the left and right edges
+     * are joined so that each row is a ring
+     * 
+     * @param R
+     * @param C
+     * @param wrap
+     */
+    public MappedPercolation(int R, int C, boolean wrap) {
+        this(R, C, wrap, null);
+    }
+
+    /**
+     * create R-by-C grid, with all sites blocked, backed by files in dir
+     * (the default temporary directory if null); if wrap is set, the left
+     * and right edges are joined so that each row is a ring
+     * 
+     * @param R
+     * @param C
+     * @param wrap
+     * @param dir
+     */
+    public MappedPercolation(int R, int C, boolean wrap, Path dir) {
+        if (R <= 0 || C <= 0) {
+            throw new IllegalArgumentException();
+        }
+        rows = R;
+        cols = C;
+        this.wrap = wrap;
+        long sites = (long) R * C;
+        try {
+            grid = new MappedLongs(dir, "grid", (sites + 63) >>> 6);
+            try {
+                parent = new MappedLongs(dir, "uf", sites);
+            } catch (IOException e) {
+                grid.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * number of rows
+     * 
+     * @return
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * number of columns
+     * 
+     * @return
+     */
+    public int cols() {
+        return cols;
+    }
+
+    /**
+     * are the left and right edges joined?
+     * 
+     * @return
+     */
+    public boolean wraps() {
+        return wrap;
+    }
+
+    /**
+     * open site (row i, column j) if it is not open already
+     * 
+     * @param i
+     * @param j
+     */
+    public void open(int i, int j) {
+        ensureOpen();
+        check(i, j);
+        openSite(i - 1, j - 1);
+    }
+
+    /**
+     * open the sites (R[k], C[k]) in order; all indices are checked before
+     * any site is opened
+     * 
+     * @param R
+     * @param C
+     * @return the index k after which the system first percolates, or -1 if
+     *         it did not start percolating during this call
+     */
+    public int openAll(int[] R, int[] C) {
+        ensureOpen();
+        if (R.length != C.length) {
+            throw new IllegalArgumentException();
+        }
+        for (int k = 0; k < R.length; ++k) {
+            check(R[k], C[k]);
+        }
+
+        int first = -1;
+        for (int k = 0; k < R.length; ++k) {
+            boolean before = spans;
+            openSite(R[k] - 1, C[k] - 1);
+            if (!before && spans) {
+                first = k;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * open the sites with the given 0-based row-major indices
+     * (row - 1) * C + (column - 1) in order; all indices are checked before
+     * any site is opened
+     * 
+     * @param sites
+     * @return the index k after which the system first percolates, or -1 if
+     *         it did not start percolating during this call
+     */
+    public int openAll(int[] sites) {
+        long[] wide = new long[sites.length];
+        for (int k = 0; k < sites.length; ++k) {
+            wide[k] = sites[k];
+        }
+        return openAll(wide);
+    }
+
+    /**
+     * openAll(int[]) for grids with more than Integer.MAX_VALUE sites
+     * 
+     * @param sites
+     * @return the index k after which the system first percolates, or -1 if
+     *         it did not start percolating during this call
+     */
+    public int openAll(long[] sites) {
+        ensureOpen();
+        final long count = (long) rows * cols;
+        for (long site : sites) {
+            if (site < 0 || site >= count) {
+                throw new java.lang.IndexOutOfBoundsException();
+            }
+        }
+
+        int first = -1;
+        for (int k = 0; k < sites.length; ++k) {
+            boolean before = spans;
+            int X = (int) (sites[k] / cols);
+            openSite(X, (int) (sites[k] - (long) X * cols));
+            if (!before && spans) {
+                first = k;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * is site (row i, column j) open?
+     * 
+     * @param i
+     * @param j
+     * @return
+     */
+    public boolean isOpen(int i, int j) {
+        ensureOpen();
+        check(i, j);
+        return isOpen(index(i, j));
+    }
+
+    /**
+     * is site (row i, column j) full?
+     * 
+     * @param i
+     * @param j
+     * @return
+     */
+    public boolean isFull(int i, int j) {
+        ensureOpen();
+        check(i, j);
+        long XY = index(i, j);
+        return isOpen(XY) && (-parent.get(find(XY)) & TOP) != 0;
+    }
+
+    /**
+     * block all sites again by zero-filling both files, which writes every
+     * page of them
+     */
+    public void reset() {
+        ensureOpen();
+        grid.clear();
+        parent.clear();
+        openSites = 0;
+        spans = false;
+    }
+
+    /**
+     * number of open sites
+     * 
+     * @return
+     * @throws ArithmeticException if more than Integer.MAX_VALUE sites are
+     *         open; use openSiteCount()
+     */
+    public int numberOfOpenSites() {
+        ensureOpen();
+        return Math.toIntExact(openSites);
+    }
+
+    /**
+     * number of open sites, for grids of more than Integer.MAX_VALUE sites
+     * 
+     * @return
+     */
+    public long openSiteCount() {
+        ensureOpen();
+        return openSites;
+    }
+
+    /**
+     * does the system percolate?
+     * 
+     * @return
+     */
+    public boolean percolates() {
+        ensureOpen();
+        return spans;
+    }
+
+    /**
+     * approximate heap size of this object in bytes: header and fields and
+     * the buffers of the mapped segments; the 8 1/8 bytes per site of the
+     * files themselves are not on the heap
+     * 
+     * @return
+     */
+    public long memoryFootprint() {
+        ensureOpen();
+        return 48 + grid.memoryFootprint() + parent.memoryFootprint();
+    }
+
+    /**
+     * close and delete the backing files; any later call but rows(), cols(),
+     * wraps() and close() throws IllegalStateException
+     * 
+     * Java cannot unmap a file explicitly: the mappings are released, and
+     * the disk space of the deleted files freed, only once the garbage
+     * collector reclaims the dropped buffers.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            grid.close();
+        } finally {
+            parent.close();
+        }
+    }
+
+    /**
+     * open site (X, Y), 0-based and already bounds checked
+     */
+    private void openSite(final int X, final int Y) {
+        final long XY = (long) X * cols + Y;
+        final long word = grid.get(XY >>> 6);
+        final long bit = 1L << XY;
+        if ((word & bit) != 0)
+            return;
+        grid.set(XY >>> 6, word | bit);
+        ++openSites;
+
+        if (X == 0) { // first
+            mark(XY, TOP);
+        }
+        if (X == rows - 1) { // last
+            mark(XY, BOTTOM);
+        }
+
+        if (Y > 0)
+            union(XY, XY - 1);
+        else if (wrap)
+            union(XY, XY + cols - 1);
+        if (Y < cols - 1)
+            union(XY, XY + 1);
+        else if (wrap)
+            union(XY, XY - cols + 1);
+        if (X > 0)
+            union(XY, XY - cols);
+        if (X < rows - 1)
+            union(XY, XY + cols);
+    }
+
+    private boolean isOpen(long xy) {
+        return (grid.get(xy >>> 6) & (1L << xy)) != 0;
+    }
+
+    private long find(long p) {
+        long next = parent.get(p);
+        while (next > 0) {
+            long up = next - 1;
+            long grand = parent.get(up);
+            if (grand <= 0) {
+                return up;
+            }
+            parent.set(p, grand);
+            p = grand - 1;
+            next = parent.get(p);
+        }
+        return p;
+    }
+
+    private void union(long xy, long neighbor) {
+        if (!isOpen(neighbor)) {
+            return;
+        }
+        long rootP = find(xy);
+        long rootQ = find(neighbor);
+        if (rootP == rootQ) {
+            return;
+        }
+        long packedP = -parent.get(rootP);
+        long packedQ = -parent.get(rootQ);
+        long flags = (packedP | packedQ) & FLAGS;
+        long rankP = packedP >>> 2;
+        long rankQ = packedQ >>> 2;
+
+        if (rankP < rankQ) {
+            parent.set(rootP, rootQ + 1);
+            parent.set(rootQ, -(rankQ << 2 | flags));
+        } else {
+            parent.set(rootQ, rootP + 1);
+            long rank = rankP == rankQ ? rankP + 1 : rankP;
+            parent.set(rootP, -(rank << 2 | flags));
+        }
+        if (flags == FLAGS) {
+            spans = true;
+        }
+    }
+
+    private void mark(long p, long flag) {
+        long root = find(p);
+        long packed = -parent.get(root) | flag;
+        parent.set(root, -packed);
+        if ((packed & FLAGS) == FLAGS) {
+            spans = true;
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+    }
+
+    private void check(int i, int j) {
+        if (i < 1 || j < 1 || i > rows || j > cols) {
+            throw new java.lang.IndexOutOfBoundsException();
+        }
+    }
+
+    private long index(int i, int j) {
+        return (long) (i - 1) * cols + (j - 1);
+    }
+
+    /**
+     * long array in a temporary file, mapped in 1 GB segments (a single
+     * mapping cannot exceed 2 GB)
+     */
+    private static class MappedLongs implements Closeable {
+        private static final int SHIFT = 27; // 2^27 longs per segment
+        private static final long MASK = (1L << SHIFT) - 1;
+
+        private final Path file;
+        private final FileChannel channel;
+        private LongBuffer[] segments; // null once closed
+
+        MappedLongs(Path dir, String name, long length) throws IOException {
+            file = dir == null ? Files.createTempFile("percolation-", name)
+                    : Files.createTempFile(dir, "percolation-", name);
+            channel = FileChannel.open(file, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            int count = (int) ((length + MASK) >>> SHIFT);
+            segments = new LongBuffer[count];
+            try {
+                for (int s = 0; s < count; ++s) {
+                    long first = (long) s << SHIFT;
+                    long longs = Math.min(1L << SHIFT, length - first);
+                    segments[s] = channel
+                            .map(FileChannel.MapMode.READ_WRITE, first * 8,
+                                    longs * 8)
+                            .order(ByteOrder.nativeOrder()).asLongBuffer();
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        long get(long i) {
+            return segments[(int) (i >>> SHIFT)].get((int) (i & MASK));
+        }
+
+        void set(long i, long value) {
+            segments[(int) (i >>> SHIFT)].put((int) (i & MASK), value);
+        }
+
+        void clear() {
+            long[] zeros = new long[1 << 13];
+            for (LongBuffer segment : segments) {
+                for (int at = 0; at < segment.limit(); at += zeros.length) {
+                    segment.put(at, zeros, 0,
+                            Math.min(zeros.length, segment.limit() - at));
+                }
+            }
+        }
+
+        /**
+         * header and fields, the segment array, and a LongBuffer view and
+         * its MappedByteBuffer per segment
+         */
+        long memoryFootprint() {
+            return 32 + 16 + 4L * segments.length + 128L * segments.length;
+        }
+
+        /**
+         * drop the segments, so that they can be unmapped by the garbage
+         * collector, and close and delete the file
+         */
+        @Override
+        public void close() {
+            segments = null;
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
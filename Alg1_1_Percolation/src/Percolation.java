@@ -1,11 +1,14 @@
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
+import edu.princeton.cs.algs4.StdOut;
 
 public class Percolation {
 
-    private int gridSize;
-    private boolean[] grid;
-    private WeightedQuickUnionUF uf;
-    private WeightedQuickUnionUF fullUF;
+    private int rows;
+    private int cols;
+    private boolean wrap;
+    private LongBitSet grid;
+    private PercolationUF uf;
+    private int openSites;
+    private PercolationMetrics metrics;
 
     /**
      * create N-by-N grid, with all sites blocked
@@ -13,20 +16,65 @@ public class Percolation {
      * @param N
      */
     public Percolation(int N) {
-        if (N <= 0) {
+        this(N, N, false);
+    }
+
+    /**
+     * create R-by-C grid, with all sites blocked; if wrap is set, the left
+     * and right edges are joined so that each row is a ring (a cylinder that
+     * percolates from top to bottom)
+     * 
+     * @param R
+     * @param C
+     * @param wrap
+     */
+    public Percolation(int R, int C, boolean wrap) {
+        if (R <= 0 || C <= 0 || (long) R * C > Integer.MAX_VALUE) {
             throw new IllegalArgumentException();
         }
-        gridSize = N;
-        grid = new boolean[N * N];
-        uf = new WeightedQuickUnionUF((N * N) + 2);
-        fullUF = new WeightedQuickUnionUF((N * N) + 1);
+        rows = R;
+        cols = C;
+        this.wrap = wrap;
+        grid = new LongBitSet(R * C);
+        uf = new PercolationUF(R * C);
+    }
 
-        grid[0] = true;
+    /**
+     * number of rows
+     * 
+     * @return
+     */
+    public int rows() {
+        return rows;
+    }
 
-        for (int i = 0; i < gridSize * gridSize; ++i) {
-            grid[i] = false;
-        }
+    /**
+     * number of columns
+     * 
+     * @return
+     */
+    public int cols() {
+        return cols;
+    }
 
+    /**
+     * are the left and right edges joined?
+     * 
+     * @return
+     */
+    public boolean wraps() {
+        return wrap;
+    }
+
+    /**
+     * count opens, finds and unions in m from now on; null (the default)
+     * stops counting
+     * 
+     * @param m
+     */
+    public void setMetrics(PercolationMetrics m) {
+        metrics = m;
+        uf.setMetrics(m);
     }
 
     /**
@@ -36,31 +84,72 @@ public class Percolation {
      * @param j
      */
     public void open(int i, int j) {
-        if (i < 1 || j < 1 || i > gridSize || j > gridSize) {
+        if (i < 1 || j < 1 || i > rows || j > cols) {
             throw new java.lang.IndexOutOfBoundsException();
         }
 
-        final int X = i - 1;
-        final int Y = j - 1;
-        final int XY = gridXY(X, Y);
-
-        if (grid[XY - 1])
-            return;
-        grid[XY - 1] = true;
+        openSite(i - 1, j - 1);
+    }
 
-        if (X == 0) { // first
-            uf.union(0, XY);
-            fullUF.union(0, XY);
+    /**
+     * open the sites (R[k], C[k]) in order; all indices are checked before
+     * any site is opened
+     * 
+     * @param R
+     * @param C
+     * @return the index k after which the system first percolates, or -1 if
+     *         it did not start percolating during this call
+     */
+    public int openAll(int[] R, int[] C) {
+        if (R.length != C.length) {
+            throw new IllegalArgumentException();
+        }
+        for (int k = 0; k < R.length; ++k) {
+            if (R[k] < 1 || C[k] < 1 || R[k] > rows || C[k] > cols) {
+                throw new java.lang.IndexOutOfBoundsException();
+            }
         }
-        if (X == gridSize - 1) { // last
-            uf.union(XY, gridSize * gridSize + 1);
+
+        int first = -1;
+        boolean spans = uf.spans();
+        for (int k = 0; k < R.length; ++k) {
+            openSite(R[k] - 1, C[k] - 1);
+            if (!spans && uf.spans()) {
+                spans = true;
+                first = k;
+            }
         }
+        return first;
+    }
 
-        union(XY, X, Y - 1);
-        union(XY, X, Y + 1);
-        union(XY, X - 1, Y);
-        union(XY, X + 1, Y);
+    /**
+     * open the sites with the given 0-based row-major indices
+     * (row - 1) * C + (column - 1) in order; all indices are checked before
+     * any site is opened
+     * 
+     * @param sites
+     * @return the index k after which the system first percolates, or -1 if
+     *         it did not start percolating during this call
+     */
+    public int openAll(int[] sites) {
+        final int count = rows * cols;
+        for (int site : sites) {
+            if (site < 0 || site >= count) {
+                throw new java.lang.IndexOutOfBoundsException();
+            }
+        }
 
+        int first = -1;
+        boolean spans = uf.spans();
+        for (int k = 0; k < sites.length; ++k) {
+            int X = sites[k] / cols;
+            openSite(X, sites[k] - X * cols);
+            if (!spans && uf.spans()) {
+                spans = true;
+                first = k;
+            }
+        }
+        return first;
     }
 
     /**
@@ -71,11 +160,11 @@ public class Percolation {
      * @return
      */
     public boolean isOpen(int i, int j) {
-        if (i < 1 || j < 1 || i > gridSize || j > gridSize) {
+        if (i < 1 || j < 1 || i > rows || j > cols) {
             throw new java.lang.IndexOutOfBoundsException();
         }
 
-        return (grid[gridXY(i - 1, j - 1) - 1]);
+        return grid.get(gridXY(i - 1, j - 1));
     }
 
     /**
@@ -86,50 +175,123 @@ public class Percolation {
      * @return
      */
     public boolean isFull(int i, int j) {
-        if (i < 1 || j < 1 || i > gridSize || j > gridSize) {
+        if (i < 1 || j < 1 || i > rows || j > cols) {
             throw new java.lang.IndexOutOfBoundsException();
         }
         
         if (isOpen(i, j)) {
-            return fullUF.connected(0, gridXY(i - 1, j - 1));
+            return uf.connectedToTop(gridXY(i - 1, j - 1));
         }
         return false;
 
     }
 
+    /**
+     * block all sites again, keeping the allocated storage
+     */
+    public void reset() {
+        grid.clear();
+        uf.reset();
+        openSites = 0;
+    }
+
+    /**
+     * number of open sites
+     * 
+     * @return
+     */
+    public int numberOfOpenSites() {
+        return openSites;
+    }
+
     /**
      * does the system percolate?
      * 
      * @return
      */
     public boolean percolates() {
-        if (gridSize == 1) {
-            return (grid[0]);
-        }
+        return uf.spans();
+    }
 
-        return uf.connected(0, gridSize * gridSize + 1);
+    /**
+     * approximate heap size of this object in bytes: header and fields, the
+     * open-site bit set (1/8 byte per site) and the union-find (4 bytes per
+     * site)
+     * 
+     * @return
+     */
+    public long memoryFootprint() {
+        return 32 + grid.memoryFootprint() + uf.memoryFootprint();
     }
 
     /**
-     * test client (optional)
+     * test client (optional): prints the memory footprint for each N given
      * 
      * @param args
      */
     public static void main(String[] args) {
+        for (String arg : args) {
+            int N = Integer.parseInt(arg);
+            long bytes = new Percolation(N).memoryFootprint();
+            StdOut.printf("N = %d: %d bytes, %.3f bytes per site%n", N, bytes,
+                    (double) bytes / ((double) N * N));
+        }
+    }
 
+    /**
+     * open site (X, Y), 0-based and already bounds checked
+     */
+    private void openSite(final int X, final int Y) {
+        if (metrics == null) {
+            link(X, Y);
+            return;
+        }
+        long start = System.nanoTime();
+        if (link(X, Y)) {
+            metrics.recordOpen(System.nanoTime() - start);
+        }
     }
 
-    private void union(final int xy, final int X, final int Y) {
-        if (X >= 0 && Y >= 0 && X < gridSize && Y < gridSize) {
-            if (isOpen(X + 1, Y + 1)) {
-                int ufIndex = X * gridSize + Y + 1;
-                uf.union(xy, ufIndex);
-                fullUF.union(xy, ufIndex);
-            }
+    /**
+     * mark site (X, Y) open and join it to its open neighbours; false if it
+     * was open already
+     */
+    private boolean link(final int X, final int Y) {
+        final int XY = gridXY(X, Y);
+
+        if (!grid.set(XY))
+            return false;
+        ++openSites;
+
+        if (X == 0) { // first
+            uf.connectTop(XY);
+        }
+        if (X == rows - 1) { // last
+            uf.connectBottom(XY);
+        }
+
+        if (Y > 0)
+            union(XY, XY - 1);
+        else if (wrap)
+            union(XY, XY + cols - 1);
+        if (Y < cols - 1)
+            union(XY, XY + 1);
+        else if (wrap)
+            union(XY, XY - cols + 1);
+        if (X > 0)
+            union(XY, XY - cols);
+        if (X < rows - 1)
+            union(XY, XY + cols);
+        return true;
+    }
+
+    private void union(final int xy, final int neighbor) {
+        if (grid.get(neighbor)) {
+            uf.union(xy, neighbor);
         }
     }
 
     private int gridXY(int x, int y) {
-        return x * gridSize + y + 1;
+        return x * cols + y;
     }
 }
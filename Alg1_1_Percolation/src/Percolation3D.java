@@ -0,0 +1,165 @@
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * site percolation on an N-by-N-by-N cubic lattice: the system percolates
+ * when an open path of face-adjacent sites joins layer 1 to layer N
+ * 
+ * Sites are kept in a packed bit set and one PercolationUF, i.e. 4 1/8 bytes
+ * per site, so a 500^3 lattice (1.25 * 10^8 sites) needs about 516 MB.
+ */
+public class Percolation3D {
+
+    private int size;
+    private int layer;
+    private LongBitSet grid;
+    private PercolationUF uf;
+    private int openSites;
+
+    /**
+     * create N-by-N-by-N lattice, with all sites blocked
+     * 
+     * @param N
+     */
+    public Percolation3D(int N) {
+        if (N <= 0 || (long) N * N * N > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException();
+        }
+        size = N;
+        layer = N * N;
+        grid = new LongBitSet(N * layer);
+        uf = new PercolationUF(N * layer);
+    }
+
+    /**
+     * open site (layer i, row j, column k) if it is not open already
+     * 
+     * @param i
+     * @param j
+     * @param k
+     */
+    public void open(int i, int j, int k) {
+        check(i, j, k);
+
+        final int X = i - 1;
+        final int Y = j - 1;
+        final int Z = k - 1;
+        final int XYZ = X * layer + Y * size + Z;
+
+        if (!grid.set(XYZ))
+            return;
+        ++openSites;
+
+        if (X == 0) { // first layer
+            uf.connectTop(XYZ);
+        }
+        if (X == size - 1) { // last layer
+            uf.connectBottom(XYZ);
+        }
+
+        if (X > 0)
+            union(XYZ, XYZ - layer);
+        if (X < size - 1)
+            union(XYZ, XYZ + layer);
+        if (Y > 0)
+            union(XYZ, XYZ - size);
+        if (Y < size - 1)
+            union(XYZ, XYZ + size);
+        if (Z > 0)
+            union(XYZ, XYZ - 1);
+        if (Z < size - 1)
+            union(XYZ, XYZ + 1);
+    }
+
+    /**
+     * is site (layer i, row j, column k) open?
+     * 
+     * @param i
+     * @param j
+     * @param k
+     * @return
+     */
+    public boolean isOpen(int i, int j, int k) {
+        check(i, j, k);
+        return grid.get(index(i, j, k));
+    }
+
+    /**
+     * is site (layer i, row j, column k) full?
+     * 
+     * @param i
+     * @param j
+     * @param k
+     * @return
+     */
+    public boolean isFull(int i, int j, int k) {
+        check(i, j, k);
+        int XYZ = index(i, j, k);
+        return grid.get(XYZ) && uf.connectedToTop(XYZ);
+    }
+
+    /**
+     * block all sites again, keeping the allocated storage
+     */
+    public void reset() {
+        grid.clear();
+        uf.reset();
+        openSites = 0;
+    }
+
+    /**
+     * number of open sites
+     * 
+     * @return
+     */
+    public int numberOfOpenSites() {
+        return openSites;
+    }
+
+    /**
+     * does the system percolate?
+     * 
+     * @return
+     */
+    public boolean percolates() {
+        return uf.spans();
+    }
+
+    /**
+     * approximate heap size of this object in bytes
+     * 
+     * @return
+     */
+    public long memoryFootprint() {
+        return 32 + grid.memoryFootprint() + uf.memoryFootprint();
+    }
+
+    /**
+     * test client (optional): prints the memory footprint for each N given
+     * 
+     * @param args
+     */
+    public static void main(String[] args) {
+        for (String arg : args) {
+            int N = Integer.parseInt(arg);
+            long bytes = new Percolation3D(N).memoryFootprint();
+            StdOut.printf("N = %d: %d bytes, %.3f bytes per site%n", N, bytes,
+                    (double) bytes / ((double) N * N * N));
+        }
+    }
+
+    private void union(final int xyz, final int neighbor) {
+        if (grid.get(neighbor)) {
+            uf.union(xyz, neighbor);
+        }
+    }
+
+    private void check(int i, int j, int k) {
+        if (i < 1 || j < 1 || k < 1 || i > size || j > size || k > size) {
+            throw new java.lang.IndexOutOfBoundsException();
+        }
+    }
+
+    private int index(int i, int j, int k) {
+        return (i - 1) * layer + (j - 1) * size + (k - 1);
+    }
+}
@@ -0,0 +1,290 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
+
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.Stopwatch;
+
+/**
+ * single-threaded timing of the PercolationStats trial strategies
+ * 
+ * usage: PercolationBenchmark T N1 [N2 ...]
+ * 
+ * or: PercolationBenchmark gc T N p, comparing the memory allocated by
+ * fixed-probability trials that build a new Percolation each time with
+ * trials that reset one Percolation per worker, on one thread and on every
+ * processor
+ * 
+ * or: PercolationBenchmark mapped N, comparing the open() throughput of
+ * Percolation and MappedPercolation on one N-by-N trial
+ * 
+ * or: PercolationBenchmark sweep T N p, comparing fixed-probability trials
+ * checked by union-find (Percolation) and by row sweeps (SweepPercolation)
+ * 
+ * The trial throughput of the random generators is compared by the JMH
+ * TrialBenchmark (its rng parameter).
+ */
+public class PercolationBenchmark {
+
+    private static final long SEED = 20151003L;
+
+    /**
+     * seconds taken by T trials on an N-by-N grid with the given strategy
+     * 
+     * @param N
+     * @param T
+     * @param strategy
+     * @return
+     */
+    private static double time(int N, int T,
+            PercolationStats.Strategy strategy) {
+        Stopwatch watch = new Stopwatch();
+        new PercolationStats(N, T, SEED, 1, strategy);
+        return watch.elapsedTime();
+    }
+
+    /**
+     * bytes allocated so far by the current thread
+     */
+    private static long allocated() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean()).getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+    }
+
+    /**
+     * garbage collections run so far, over all collectors
+     */
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory
+                .getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static void report(String name, int T, long bytes, long gcs,
+            double seconds, double probability) {
+        StdOut.printf("%-10s %14.0f bytes/trial %6d GCs %9.3fs  P = %.4f%n",
+                name, (double) bytes / T, gcs, seconds, probability);
+    }
+
+    /**
+     * a fixed-probability trial on an N-by-N Percolation: open each site
+     * with probability p, then 1 if the grid percolates, else 0
+     */
+    private static double spans(Percolation perc, int N, double p,
+            RandomGenerator random) {
+        for (int i = 1; i <= N; ++i) {
+            for (int j = 1; j <= N; ++j) {
+                if (random.nextDouble() < p) {
+                    perc.open(i, j);
+                }
+            }
+        }
+        return perc.percolates() ? 1 : 0;
+    }
+
+    /**
+     * T fixed-probability trials on an N-by-N grid, first allocating a new
+     * Percolation per trial, then resetting one per worker, on one thread
+     * and on every processor
+     */
+    private static void allocation(int N, int T, double p) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        allocation("fresh", T, 1,
+                () -> random -> spans(new Percolation(N), N, p, random));
+        Supplier<PercolationStats.Trial> reset = () -> {
+            Percolation perc = new Percolation(N);
+            return random -> {
+                perc.reset();
+                return spans(perc, N, p, random);
+            };
+        };
+        allocation("reset", T, 1, reset);
+        allocation("reset x" + threads, T, threads, reset);
+    }
+
+    /**
+     * runs T trials from the factory on the given number of threads and
+     * reports the bytes allocated by making and running them, counted on
+     * whichever worker thread did so
+     */
+    private static void allocation(String name, int T, int threads,
+            Supplier<PercolationStats.Trial> trials) {
+        LongAdder bytes = new LongAdder();
+        Supplier<PercolationStats.Trial> counted = () -> {
+            long[] last = { allocated() };
+            PercolationStats.Trial trial = trials.get();
+            return random -> {
+                double value = trial.run(random);
+                long now = allocated();
+                bytes.add(now - last[0]);
+                last[0] = now;
+                return value;
+            };
+        };
+        long gcs = collections();
+        Stopwatch watch = new Stopwatch();
+        PercolationStats ps = new PercolationStats(counted, T, SEED, threads);
+        report(name, T, bytes.sum(), collections() - gcs, watch.elapsedTime(),
+                ps.mean());
+    }
+
+    /**
+     * opens random sites of an N-by-N grid until it percolates, once on the
+     * heap and once memory-mapped, and reports opens per second
+     */
+    private static void mapped(int N) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        Stopwatch watch = new Stopwatch();
+        Percolation heap = new Percolation(N);
+        while (!heap.percolates()) {
+            heap.open(random.nextInt(1, N + 1), random.nextInt(1, N + 1));
+        }
+        double seconds = watch.elapsedTime();
+        StdOut.printf("%-10s %12d opens %9.3fs %14.0f opens/s%n", "heap",
+                heap.numberOfOpenSites(), seconds,
+                heap.numberOfOpenSites() / seconds);
+
+        random = new SplittableRandom(SEED);
+        watch = new Stopwatch();
+        try (MappedPercolation file = new MappedPercolation(N)) {
+            while (!file.percolates()) {
+                file.open(random.nextInt(1, N + 1), random.nextInt(1, N + 1));
+            }
+            seconds = watch.elapsedTime();
+            StdOut.printf("%-10s %12d opens %9.3fs %14.0f opens/s%n",
+                    "mapped", file.openSiteCount(), seconds,
+                    file.openSiteCount() / seconds);
+        }
+    }
+
+    /**
+     * T fixed-probability trials on an N-by-N grid, first drawing each site
+     * and opening it in a Percolation, then drawing 64 sites at a time into
+     * a SweepPercolation; the second pass is also timed with the union-find
+     * built from the sweep's own grids, to separate the checkers from the
+     * random draws
+     */
+    private static void sweep(int N, int T, double p) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        Stopwatch watch = new Stopwatch();
+        Percolation perc = new Percolation(N);
+        int spans = 0;
+        for (int t = 0; t < T; ++t) {
+            perc.reset();
+            for (int i = 1; i <= N; ++i) {
+                for (int j = 1; j <= N; ++j) {
+                    if (random.nextDouble() < p) {
+                        perc.open(i, j);
+                    }
+                }
+            }
+            if (perc.percolates()) {
+                ++spans;
+            }
+        }
+        double seconds = watch.elapsedTime();
+        StdOut.printf("%-10s %9.3fs %10.1f trials/s  P = %.4f%n",
+                "union-find", seconds, T / seconds, (double) spans / T);
+
+        // per-trial phases are too short for Stopwatch's milliseconds
+        random = new SplittableRandom(SEED);
+        SweepPercolation bits = new SweepPercolation(N, N, false);
+        long draw = 0;
+        long check = 0;
+        long build = 0;
+        spans = 0;
+        for (int t = 0; t < T; ++t) {
+            long start = System.nanoTime();
+            bits.openRandom(p, random);
+            long drawn = System.nanoTime();
+            if (bits.percolates()) {
+                ++spans;
+            }
+            long checked = System.nanoTime();
+            draw += drawn - start;
+            check += checked - drawn;
+
+            perc.reset();
+            for (int i = 1; i <= N; ++i) {
+                for (int j = 1; j <= N; ++j) {
+                    if (bits.isOpen(i, j)) {
+                        perc.open(i, j);
+                    }
+                }
+            }
+            perc.percolates();
+            build += System.nanoTime() - checked;
+        }
+        seconds = (draw + check) / 1e9;
+        StdOut.printf("%-10s %9.3fs %10.1f trials/s  P = %.4f%n", "sweep",
+                seconds, T / seconds, (double) spans / T);
+        StdOut.printf("  drawing %.3fs, sweeping %.3fs, union-find on the "
+                + "same grids %.3fs%n", draw / 1e9, check / 1e9, build / 1e9);
+    }
+
+    /**
+     * test client
+     * 
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length < 2)
+            throw new java.lang.IllegalArgumentException();
+
+        if (args[0].equals("mapped")) {
+            mapped(256); // warm-up
+            mapped(Integer.parseInt(args[1]));
+            return;
+        }
+
+        if (args[0].equals("sweep")) {
+            if (args.length < 4)
+                throw new java.lang.IllegalArgumentException();
+            int T = Integer.parseInt(args[1]);
+            int N = Integer.parseInt(args[2]);
+            double p = Double.parseDouble(args[3]);
+            sweep(64, 200, p); // warm-up
+            sweep(N, T, p);
+            return;
+        }
+
+        if (args[0].equals("gc")) {
+            if (args.length < 4)
+                throw new java.lang.IllegalArgumentException();
+            int T = Integer.parseInt(args[1]);
+            int N = Integer.parseInt(args[2]);
+            double p = Double.parseDouble(args[3]);
+            allocation(64, 200, p); // warm-up
+            allocation(N, T, p);
+            return;
+        }
+
+        int T = Integer.parseInt(args[0]);
+
+        // warm up the JIT on a small grid before timing anything
+        for (PercolationStats.Strategy s : PercolationStats.Strategy.values()) {
+            time(64, 200, s);
+        }
+
+        StdOut.printf("%8s %6s", "N", "T");
+        for (PercolationStats.Strategy s : PercolationStats.Strategy.values()) {
+            StdOut.printf(" %14s", s);
+        }
+        StdOut.println();
+        for (int a = 1; a < args.length; ++a) {
+            int N = Integer.parseInt(args[a]);
+            StdOut.printf("%8d %6d", N, T);
+            for (PercolationStats.Strategy s : PercolationStats.Strategy.values()) {
+                StdOut.printf(" %13.3fs", time(N, T, s));
+            }
+            StdOut.println();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * counters for the cost of percolation runs, safe to share between worker
+ * threads
+ * 
+ * Nothing is counted unless an instance is attached (Percolation.setMetrics,
+ * PercolationUF.setMetrics); the uninstrumented code only pays a null check.
+ */
+public class PercolationMetrics {
+
+    /** find path lengths of this many hops or more share the last bucket */
+    public static final int MAX_PATH = 32;
+
+    private final LongAdder opens = new LongAdder();
+    private final LongAdder openNanos = new LongAdder();
+    private final LongAdder finds = new LongAdder();
+    private final LongAdder hops = new LongAdder();
+    private final LongAdder unions = new LongAdder();
+    private final LongAdder[] pathLengths = new LongAdder[MAX_PATH + 1];
+    private final LongAdder percolations = new LongAdder();
+    private final LongAdder percolationNanos = new LongAdder();
+
+    /**
+     * create a set of counters, all zero
+     */
+    public PercolationMetrics() {
+        for (int i = 0; i < pathLengths.length; ++i) {
+            pathLengths[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * one site opened, taking the given time
+     * 
+     * @param nanos
+     */
+    public void recordOpen(long nanos) {
+        opens.increment();
+        openNanos.add(nanos);
+    }
+
+    /**
+     * one find that followed the given number of parent links
+     * 
+     * @param length
+     */
+    public void recordFind(int length) {
+        finds.increment();
+        hops.add(length);
+        pathLengths[Math.min(length, MAX_PATH)].increment();
+    }
+
+    /**
+     * one union that merged two components
+     */
+    public void recordUnion() {
+        unions.increment();
+    }
+
+    /**
+     * one system that percolated the given time after its trial started
+     * 
+     * @param nanos
+     */
+    public void recordPercolation(long nanos) {
+        percolations.increment();
+        percolationNanos.add(nanos);
+    }
+
+    /**
+     * number of sites opened
+     * 
+     * @return
+     */
+    public long opens() {
+        return opens.sum();
+    }
+
+    /**
+     * sites opened per second of time spent in open()
+     * 
+     * @return
+     */
+    public double opensPerSecond() {
+        long nanos = openNanos.sum();
+        return nanos == 0 ? 0 : opens.sum() * 1e9 / nanos;
+    }
+
+    /**
+     * number of finds
+     * 
+     * @return
+     */
+    public long finds() {
+        return finds.sum();
+    }
+
+    /**
+     * mean number of parent links followed per find
+     * 
+     * @return
+     */
+    public double meanPathLength() {
+        long n = finds.sum();
+        return n == 0 ? 0 : (double) hops.sum() / n;
+    }
+
+    /**
+     * number of finds that followed exactly length parent links (length
+     * MAX_PATH counts that many or more)
+     * 
+     * @param length
+     * @return
+     */
+    public long pathLengthCount(int length) {
+        return pathLengths[length].sum();
+    }
+
+    /**
+     * number of unions that merged two components
+     * 
+     * @return
+     */
+    public long unions() {
+        return unions.sum();
+    }
+
+    /**
+     * mean time from the start of a trial until its system percolated, in
+     * seconds
+     * 
+     * @return
+     */
+    public double meanTimeToPercolate() {
+        long n = percolations.sum();
+        return n == 0 ? 0 : percolationNanos.sum() / 1e9 / n;
+    }
+
+    /**
+     * multi-line summary of all counters
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append(String.format("opens                   = %d (%.0f/s)%n",
+                opens(), opensPerSecond()));
+        str.append(String.format("unions                  = %d%n", unions()));
+        str.append(String.format("finds                   = %d%n", finds()));
+        str.append(String.format("mean find path length   = %.4f%n",
+                meanPathLength()));
+        str.append("find path lengths       =");
+        for (int i = 0; i <= MAX_PATH; ++i) {
+            long n = pathLengthCount(i);
+            if (n != 0) {
+                str.append(' ').append(i).append(i == MAX_PATH ? "+:" : ":")
+                        .append(n);
+            }
+        }
+        str.append(String.format("%nmean time to percolate  = %.6f s%n",
+                meanTimeToPercolate()));
+        return str.toString();
+    }
+}
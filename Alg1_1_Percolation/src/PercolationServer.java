@@ -0,0 +1,306 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * long-lived PercolationStats service on a localhost socket, so that callers
+ * pay for JVM start-up and JIT warm-up once instead of per run
+ * 
+ * The protocol is one request per line, one response per line:
+ * 
+ * <pre>
+ * N T [seed] [strategy] -> accepted id
+ *                           ... later, in completion order:
+ *                           result id N T seed mean stddev lo hi wait_ms run_ms
+ * stats                 -> stats queued=q running=r completed=c failed=f
+ *                           wait_ms=w run_ms=x max_ms=m
+ * quit                  -> (connection closed)
+ * </pre>
+ * 
+ * Errors are reported as "error id message" (id is - for a line that was
+ * not accepted). wait_ms and run_ms in stats are means over the finished
+ * jobs, 0 before the first. Jobs from all connections share one bounded
+ * queue served by a fixed pool of workers; a job runs on a single worker,
+ * which keeps the trial grids of the last few (N, strategy) pairs it ran and
+ * resets them instead of allocating new ones. Results are those of
+ * PercolationStats with the same N, T, seed and strategy, whatever the
+ * number of workers.
+ * 
+ * Jobs are deliberately not batched together: a job is already a batch of
+ * T trials on one reused grid, so the queue hand-off per job is small next
+ * to its run time, and merging jobs would make one job's latency depend on
+ * the others queued with it.
+ */
+public class PercolationServer {
+
+    private static final int QUEUE = 1024;
+    private static final int GRIDS_PER_WORKER = 4;
+
+    // trials kept by each worker thread, least recently used dropped first
+    private static final ThreadLocal<Map<String, PercolationStats.Trial>> GRIDS
+            = ThreadLocal.withInitial(PercolationServer::newGrids);
+
+    private final ServerSocket socket;
+    private final ThreadPoolExecutor workers;
+    private final ExecutorService connections;
+    private final AtomicLong ids = new AtomicLong();
+
+    // latency counters, guarded by this
+    private long completed;
+    private long failed;
+    private final RunningStats waits = new RunningStats();
+    private final RunningStats runs = new RunningStats();
+    private double maxLatency;
+
+    /**
+     * listen on the given localhost port (0 for any free port) with the
+     * given number of worker threads
+     * 
+     * @param port
+     * @param threads
+     * @throws IOException
+     */
+    public PercolationServer(int port, int threads) throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException();
+        }
+        socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        workers = new ThreadPoolExecutor(threads, threads, 0,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(QUEUE));
+        connections = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "percolation-connection");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * port the server listens on
+     * 
+     * @return
+     */
+    public int port() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * accept connections until the server socket is closed
+     * 
+     * @throws IOException
+     */
+    public void serve() throws IOException {
+        try {
+            while (true) {
+                final Socket client = socket.accept();
+                connections.execute(() -> handle(client));
+            }
+        } catch (IOException e) {
+            if (!socket.isClosed()) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * stop accepting connections and jobs; queued jobs are dropped
+     */
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+        workers.shutdownNow();
+        connections.shutdownNow();
+    }
+
+    /**
+     * one-line summary of the queue and latency counters
+     * 
+     * @return
+     */
+    public synchronized String stats() {
+        return String.format(
+                "stats queued=%d running=%d completed=%d failed=%d"
+                        + " wait_ms=%.3f run_ms=%.3f max_ms=%.3f",
+                workers.getQueue().size(), workers.getActiveCount(),
+                completed, failed, waits.count() == 0 ? 0 : waits.mean(),
+                runs.count() == 0 ? 0 : runs.mean(), maxLatency);
+    }
+
+    private void handle(Socket client) {
+        try (Socket s = client;
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        s.getInputStream(), StandardCharsets.UTF_8));
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                        s.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.equals("quit")) {
+                    break;
+                }
+                if (line.equals("stats")) {
+                    send(out, stats());
+                    continue;
+                }
+                submit(line, out);
+            }
+        } catch (IOException e) {
+            // client went away; its pending results are dropped
+        }
+    }
+
+    private void submit(String line, PrintWriter out) {
+        final int N;
+        final int T;
+        final long seed;
+        final PercolationStats.Strategy strategy;
+        try {
+            String[] parts = line.split("\\s+");
+            if (parts.length < 2 || parts.length > 4) {
+                throw new IllegalArgumentException(
+                        "usage: N T [seed] [strategy]");
+            }
+            N = Integer.parseInt(parts[0]);
+            T = Integer.parseInt(parts[1]);
+            seed = parts.length > 2 ? Long.parseLong(parts[2])
+                    : ThreadLocalRandom.current().nextLong();
+            strategy = parts.length > 3
+                    ? PercolationStats.Strategy.valueOf(parts[3])
+                    : PercolationStats.Strategy.REJECTION;
+            if (T <= 0) {
+                throw new IllegalArgumentException("T must be positive");
+            }
+            PercolationStats.siteTrials(N, N, false, strategy); // checks N
+        } catch (IllegalArgumentException e) {
+            send(out, "error - "
+                    + (e.getMessage() == null ? "bad request" : e.getMessage()));
+            return;
+        }
+
+        final long id = ids.incrementAndGet();
+        final long queued = System.nanoTime();
+        // holding the writer keeps a fast result from overtaking "accepted"
+        synchronized (out) {
+            try {
+                workers.execute(
+                        () -> run(id, N, T, seed, strategy, queued, out));
+            } catch (RejectedExecutionException e) {
+                send(out, "error " + id + " queue full");
+                return;
+            }
+            send(out, "accepted " + id);
+        }
+    }
+
+    private void run(long id, int N, int T, long seed,
+            PercolationStats.Strategy strategy, long queued, PrintWriter out) {
+        long started = System.nanoTime();
+        try {
+            final String key = N + " " + strategy;
+            Map<String, PercolationStats.Trial> grids = GRIDS.get();
+            PercolationStats.Trial trial = grids.get(key);
+            if (trial == null) {
+                trial = PercolationStats.siteTrials(N, N, false, strategy)
+                        .get();
+                grids.put(key, trial);
+            }
+            final PercolationStats.Trial pooled = trial;
+            PercolationStats ps = new PercolationStats(() -> pooled, T, seed,
+                    1);
+            long done = System.nanoTime();
+            record(started - queued, done - started, true);
+            send(out, String.format("result %d %d %d %d %s %s %s %s %.3f %.3f",
+                    id, N, T, seed, ps.mean(), ps.stddev(), ps.confidenceLo(),
+                    ps.confidenceHi(), (started - queued) / 1e6,
+                    (done - started) / 1e6));
+        } catch (RuntimeException | OutOfMemoryError e) {
+            record(started - queued, System.nanoTime() - started, false);
+            send(out, "error " + id + " " + e);
+        }
+    }
+
+    private synchronized void record(long wait, long run, boolean ok) {
+        if (ok) {
+            ++completed;
+        } else {
+            ++failed;
+        }
+        waits.add(wait / 1e6);
+        runs.add(run / 1e6);
+        maxLatency = Math.max(maxLatency, (wait + run) / 1e6);
+    }
+
+    private static Map<String, PercolationStats.Trial> newGrids() {
+        return new LinkedHashMap<String, PercolationStats.Trial>(16, 0.75f,
+                true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, PercolationStats.Trial> eldest) {
+                return size() > GRIDS_PER_WORKER;
+            }
+        };
+    }
+
+    private static void send(Writer out, String line) {
+        synchronized (out) {
+            try {
+                out.write(line);
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                // PrintWriter does not throw; a closed client is ignored
+            }
+        }
+    }
+
+    /**
+     * test client: serve until killed
+     * 
+     * usage: PercolationServer [port] [workers]
+     * 
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7077;
+        int threads = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+
+        // warm the JIT up before the first request
+        for (PercolationStats.Strategy s : PercolationStats.Strategy
+                .values()) {
+            new PercolationStats(64, 200, 0L, threads, s);
+        }
+
+        PercolationServer server = new PercolationServer(port, threads);
+        StdOut.println("listening on localhost:" + server.port() + " with "
+                + threads + " workers");
+        server.serve();
+    }
+}
@@ -1,12 +1,101 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
 import edu.princeton.cs.algs4.StdRandom;
 import edu.princeton.cs.algs4.StdStats;
 import edu.princeton.cs.algs4.StdOut;
 
 public class PercolationStats {
+
+    /**
+     * how a single trial picks the next site to open
+     */
+    public enum Strategy {
+        /** draw random (row, column) pairs, skipping sites already open */
+        REJECTION,
+        /** open sites in the order of a random permutation of the grid */
+        PERMUTATION,
+        /**
+         * binary search the permutation prefix length at which the grid
+         * first percolates, probing each length with a flood fill
+         */
+        BISECTION
+    }
+
+    /**
+     * one percolation experiment; an instance is only ever used by one worker
+     * thread at a time, so it keeps its grid and buffers from one run to the
+     * next instead of reallocating them
+     */
+    public interface Trial {
+        /**
+         * value observed in one experiment: for the threshold trials, the
+         * fraction of sites open when the system first percolates
+         * 
+         * @param random
+         * @return
+         */
+        double run(RandomGenerator random);
+    }
+
+    /**
+     * receives the running estimate while trials are still being run
+     */
+    public interface Progress {
+        /**
+         * called after each batch of trials
+         * 
+         * @param trials
+         *            number of trials completed so far
+         * @param mean
+         * @param halfWidth
+         *            half-width of the current 95% confidence interval
+         */
+        void update(long trials, double mean, double halfWidth);
+    }
+
+    /**
+     * the default random generator of a trial: SplittableRandom seeded with
+     * the trial's seed
+     */
+    public static final LongFunction<RandomGenerator> SPLITTABLE
+            = SplittableRandom::new;
+
+    /**
+     * trials run between two convergence checks in the early-stopping mode;
+     * fixed so that the stopping point does not depend on the thread count
+     */
+    private static final int BATCH = 64;
+
+    /**
+     * batches submitted ahead of the one being folded in the early-stopping
+     * mode, so that the workers do not wait for each other between batches
+     */
+    private static final int AHEAD = 4;
+
     private double[] values;
     private double mean;
     private double stdDev;
-    private int t;
+    private long t;
 
     /**
      * perform T independent experiments on an N-by-N grid
@@ -15,33 +104,387 @@ public class PercolationStats {
      * @param T
      */
     public PercolationStats(int N, int T) {
-        if (N <= 0 || T <= 0) {
+        this(N, T, nextSeed(), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * perform T independent experiments on an N-by-N grid using the given
+     * number of worker threads; trial k always draws from a random stream
+     * derived from (seed, k), so the results for a seed do not depend on the
+     * number of threads
+     * 
+     * @param N
+     * @param T
+     * @param seed
+     * @param threads
+     */
+    public PercolationStats(int N, int T, long seed, int threads) {
+        this(N, T, seed, threads, Strategy.REJECTION);
+    }
+
+    /**
+     * perform T independent experiments on an N-by-N grid, choosing sites
+     * with the given strategy
+     * 
+     * @param N
+     * @param T
+     * @param seed
+     * @param threads
+     * @param strategy
+     */
+    public PercolationStats(int N, int T, long seed, int threads,
+            Strategy strategy) {
+        this(siteTrials(N, N, false, strategy), T, seed, threads);
+    }
+
+    /**
+     * perform T independent experiments, each worker thread running its
+     * share of them on one trial obtained from the factory
+     * 
+     * @param trials
+     * @param T
+     * @param seed
+     * @param threads
+     */
+    public PercolationStats(Supplier<? extends Trial> trials, int T,
+            long seed, int threads) {
+        this(trials, T, seed, threads, SPLITTABLE);
+    }
+
+    /**
+     * perform T independent experiments as above, trial k drawing from the
+     * generator that generators makes from the seed derived from (seed, k)
+     * 
+     * @param trials
+     * @param T
+     * @param seed
+     * @param threads
+     * @param generators
+     */
+    public PercolationStats(Supplier<? extends Trial> trials, int T,
+            long seed, int threads,
+            LongFunction<? extends RandomGenerator> generators) {
+        if (trials == null || T <= 0 || threads <= 0 || generators == null) {
             throw new java.lang.IllegalArgumentException();
         }
         t = T;
 
         values = new double[T];
 
-        for (int i = 0; i < T; ++i) {
-            int count = 0;
-            Percolation p = new Percolation(N);
-            boolean bPercolate = false;
+        Trials all = new Trials(new WorkerTrials(trials), generators, seed,
+                values, 0, 0, T, grain(T, threads));
+        if (threads == 1) {
+            all.compute();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.invoke(all);
+            } finally {
+                pool.shutdown();
+            }
+        }
 
-            while (!bPercolate) {
-                int pI = StdRandom.uniform(1, N + 1);
-                int pJ = StdRandom.uniform(1, N + 1);
-                if (!p.isOpen(pI, pJ)) {
-                    p.open(pI, pJ);
-                    ++count;
-                    bPercolate = p.percolates();
+        mean = StdStats.mean(values);
+        stdDev = StdStats.stddev(values);
+
+    }
+
+    /**
+     * perform experiments until the 95% confidence interval of the mean is
+     * at most 2 * halfWidth wide, or maxT experiments have been run; trials
+     * are run in fixed batches and folded into a running mean and variance,
+     * so memory does not grow with the number of trials and, for a given
+     * seed, the stopping point does not depend on the number of threads;
+     * with several threads, the next batches run while one is folded, and
+     * those past the stopping point are discarded
+     * 
+     * @param trials
+     * @param halfWidth
+     * @param maxT
+     * @param seed
+     * @param threads
+     * @param progress
+     *            called after every batch; may be null
+     */
+    public PercolationStats(Supplier<? extends Trial> trials,
+            double halfWidth, long maxT, long seed, int threads,
+            Progress progress) {
+        this(trials, halfWidth, maxT, seed, threads, SPLITTABLE, progress);
+    }
+
+    /**
+     * perform experiments until the confidence interval is narrow enough as
+     * above, drawing from the given generators
+     * 
+     * @param trials
+     * @param halfWidth
+     * @param maxT
+     * @param seed
+     * @param threads
+     * @param generators
+     * @param progress
+     */
+    public PercolationStats(Supplier<? extends Trial> trials,
+            double halfWidth, long maxT, long seed, int threads,
+            LongFunction<? extends RandomGenerator> generators,
+            Progress progress) {
+        if (trials == null || !(halfWidth > 0) || maxT <= 0 || threads <= 0
+                || generators == null) {
+            throw new java.lang.IllegalArgumentException();
+        }
+
+        Supplier<Trial> perWorker = new WorkerTrials(trials);
+        RunningStats stats = new RunningStats();
+        if (threads == 1) {
+            double[] batch = new double[BATCH];
+            while (stats.count() < maxT) {
+                int size = (int) Math.min(BATCH, maxT - stats.count());
+                new Trials(perWorker, generators, seed, batch, stats.count(),
+                        0, size, size).compute();
+                if (fold(stats, batch, size, halfWidth, progress)) {
+                    break;
+                }
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            Deque<Trials> running = new ArrayDeque<Trials>();
+            long submitted = 0;
+            try {
+                while (true) {
+                    while (running.size() < AHEAD && submitted < maxT) {
+                        int size = (int) Math.min(BATCH, maxT - submitted);
+                        Trials next = new Trials(perWorker, generators, seed,
+                                new double[size], submitted, 0, size,
+                                grain(size, threads));
+                        pool.execute(next);
+                        running.add(next);
+                        submitted += size;
+                    }
+                    if (running.isEmpty()) {
+                        break;
+                    }
+                    Trials oldest = running.remove();
+                    oldest.join();
+                    if (fold(stats, oldest.values, oldest.values.length,
+                            halfWidth, progress)) {
+                        break;
+                    }
+                }
+            } finally {
+                // drop the batches run ahead of the stopping point
+                pool.shutdownNow();
+                try {
+                    pool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
             }
-            values[i] = (double) count / (double) (N * N);
+        }
+
+        t = stats.count();
+        mean = stats.mean();
+        stdDev = stats.stddev();
+    }
+
+    /**
+     * fold values[0, size) into stats and report the progress
+     * 
+     * @param stats
+     * @param values
+     * @param size
+     * @param halfWidth
+     * @param progress
+     * @return whether the confidence half-width is now at most halfWidth
+     */
+    private static boolean fold(RunningStats stats, double[] values,
+            int size, double halfWidth, Progress progress) {
+        for (int k = 0; k < size; ++k) {
+            stats.add(values[k]);
+        }
+        if (progress != null) {
+            progress.update(stats.count(), stats.mean(), stats.halfWidth());
+        }
+        return stats.halfWidth() <= halfWidth;
+    }
+
+    /**
+     * perform the experiments recorded by a checkpoint, with its seed and
+     * number of trials: those already in the file are not run again, the
+     * others are run as one fork-join task, and whenever the completed
+     * results in trial order have grown by a chunk they are appended to the
+     * file (in the background), without the workers waiting for each other
+     * 
+     * @param trials
+     * @param checkpoint
+     * @param threads
+     */
+    public PercolationStats(Supplier<? extends Trial> trials,
+            TrialCheckpoint checkpoint, int threads) {
+        this(trials, checkpoint, threads, SPLITTABLE);
+    }
+
+    /**
+     * perform the experiments recorded by a checkpoint as above, drawing
+     * from the given generators (which must be those of the original run)
+     * 
+     * @param trials
+     * @param checkpoint
+     * @param threads
+     * @param generators
+     */
+    public PercolationStats(Supplier<? extends Trial> trials,
+            TrialCheckpoint checkpoint, int threads,
+            LongFunction<? extends RandomGenerator> generators) {
+        if (trials == null || checkpoint == null || threads <= 0
+                || generators == null
+                || checkpoint.trials() <= 0
+                || checkpoint.trials() > Integer.MAX_VALUE) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        final int T = (int) checkpoint.trials();
+        final long seed = checkpoint.seed();
+        t = T;
+
+        values = new double[T];
+        double[] done = checkpoint.completed();
+        System.arraycopy(done, 0, values, 0, done.length);
+
+        Supplier<Trial> perWorker = new WorkerTrials(trials);
+        int chunk = Math.max(BATCH, 16 * threads);
+        CompletedPrefix prefix = new CompletedPrefix(checkpoint, values,
+                done.length, chunk);
+        if (threads == 1) {
+            for (int lo = done.length; lo < T; lo += chunk) {
+                new Trials(perWorker, generators, seed, values, 0, lo,
+                        Math.min(T, lo + chunk), chunk, prefix).compute();
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.invoke(new Trials(perWorker, generators, seed, values, 0,
+                        done.length, T, grain(chunk, threads), prefix));
+            } finally {
+                pool.shutdown();
+            }
         }
 
         mean = StdStats.mean(values);
         stdDev = StdStats.stddev(values);
+    }
+
+    /**
+     * factory of site-percolation trials on an R-by-C grid (with left/right
+     * wrap-around if wrap is set) using the given strategy
+     * 
+     * @param R
+     * @param C
+     * @param wrap
+     * @param strategy
+     * @return
+     */
+    public static Supplier<Trial> siteTrials(final int R, final int C,
+            final boolean wrap, final Strategy strategy) {
+        return siteTrials(R, C, wrap, strategy, null);
+    }
+
+    /**
+     * factory of site-percolation trials as above whose grids count opens,
+     * finds, unions and the time to percolate in metrics (shared by all
+     * trials); BISECTION does not use union-find and cannot be counted
+     * 
+     * @param R
+     * @param C
+     * @param wrap
+     * @param strategy
+     * @param metrics
+     * @return
+     */
+    public static Supplier<Trial> siteTrials(final int R, final int C,
+            final boolean wrap, final Strategy strategy,
+            final PercolationMetrics metrics) {
+        if (R <= 0 || C <= 0 || (long) R * C > Integer.MAX_VALUE
+                || strategy == null
+                || (metrics != null && strategy == Strategy.BISECTION)) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        switch (strategy) {
+        case PERMUTATION:
+            return () -> new PermutationTrial(R, C, wrap, metrics);
+        case BISECTION:
+            return () -> new Bisection(R, C, wrap);
+        default:
+            return () -> new RejectionTrial(R, C, wrap, metrics);
+        }
+    }
+
+    /**
+     * factory of site-percolation trials on an N-by-N-by-N lattice; BISECTION
+     * is not available in three dimensions
+     * 
+     * @param N
+     * @param strategy
+     * @return
+     */
+    public static Supplier<Trial> cubeTrials(final int N,
+            final Strategy strategy) {
+        if (N <= 0 || (long) N * N * N > Integer.MAX_VALUE || strategy == null
+                || strategy == Strategy.BISECTION) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        if (strategy == Strategy.PERMUTATION) {
+            return () -> new CubePermutationTrial(N);
+        }
+        return () -> new CubeRejectionTrial(N);
+    }
 
+    /**
+     * factory of bond-percolation trials on an N-by-N grid (N at least 2);
+     * each trial reports the fraction of bonds open when the system first
+     * percolates, and BISECTION is not available
+     * 
+     * @param N
+     * @param strategy
+     * @return
+     */
+    public static Supplier<Trial> bondTrials(final int N,
+            final Strategy strategy) {
+        if (N <= 1 || (long) N * N > Integer.MAX_VALUE / 2 || strategy == null
+                || strategy == Strategy.BISECTION) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        if (strategy == Strategy.PERMUTATION) {
+            return () -> new BondPermutationTrial(N);
+        }
+        return () -> new BondRejectionTrial(N);
+    }
+
+    /**
+     * number of experiments performed
+     * 
+     * @return
+     */
+    public long trials() {
+        return t;
+    }
+
+    /**
+     * factory of trials that open each site of an R-by-C grid independently
+     * with probability p and observe 1 if the system percolates, 0 otherwise;
+     * the mean of T such trials estimates the spanning probability at p
+     * 
+     * @param R
+     * @param C
+     * @param wrap
+     * @param p
+     * @return
+     */
+    public static Supplier<Trial> spanningTrials(final int R, final int C,
+            final boolean wrap, final double p) {
+        if (R <= 0 || C <= 0 || (long) R * C > Integer.MAX_VALUE || p < 0
+                || p > 1) {
+            throw new java.lang.IllegalArgumentException();
+        }
+        return () -> new SpanningTrial(R, C, wrap, p);
     }
 
     /**
@@ -82,22 +525,677 @@ public class PercolationStats {
         return mean + common;
     }
 
+    /**
+     * draws random (row, column) pairs, skipping sites already open, until
+     * the system percolates
+     */
+    private static class RejectionTrial implements Trial {
+        private final int rows;
+        private final int cols;
+        private final Percolation p;
+        private final PercolationMetrics metrics;
+
+        RejectionTrial(int rows, int cols, boolean wrap,
+                PercolationMetrics metrics) {
+            this.rows = rows;
+            this.cols = cols;
+            this.metrics = metrics;
+            p = new Percolation(rows, cols, wrap);
+            p.setMetrics(metrics);
+        }
+
+        @Override
+        public double run(RandomGenerator random) {
+            long start = metrics == null ? 0 : System.nanoTime();
+            int count = 0;
+            p.reset();
+            boolean bPercolate = false;
+
+            while (!bPercolate) {
+                int pI = random.nextInt(1, rows + 1);
+                int pJ = random.nextInt(1, cols + 1);
+                if (!p.isOpen(pI, pJ)) {
+                    p.open(pI, pJ);
+                    ++count;
+                    bPercolate = p.percolates();
+                }
+            }
+            if (metrics != null) {
+                metrics.recordPercolation(System.nanoTime() - start);
+            }
+            return (double) count / ((double) rows * cols);
+        }
+    }
+
+    /**
+     * opens sites in the order of a Fisher-Yates shuffle that is drawn
+     * lazily, one swap per opened site, so every draw opens a new site
+     */
+    private static class PermutationTrial implements Trial {
+        private final int cols;
+        private final int[] order;
+        private final Percolation p;
+        private final PercolationMetrics metrics;
+
+        PermutationTrial(int rows, int cols, boolean wrap,
+                PercolationMetrics metrics) {
+            this.cols = cols;
+            this.metrics = metrics;
+            order = new int[rows * cols];
+            p = new Percolation(rows, cols, wrap);
+            p.setMetrics(metrics);
+        }
+
+        @Override
+        public double run(RandomGenerator random) {
+            long start = metrics == null ? 0 : System.nanoTime();
+            final int sites = order.length;
+            for (int k = 0; k < sites; ++k) {
+                order[k] = k;
+            }
+
+            p.reset();
+            int count = 0;
+            do {
+                int r = random.nextInt(count, sites);
+                int site = order[r];
+                order[r] = order[count];
+                order[count] = site;
+                p.open(site / cols + 1, site % cols + 1);
+                ++count;
+            } while (!p.percolates());
+            if (metrics != null) {
+                metrics.recordPercolation(System.nanoTime() - start);
+            }
+            return (double) count / (double) sites;
+        }
+    }
+
+    /**
+     * opens every site with probability p, 64 sites at a time, and reports
+     * whether the grid percolates by sweeping rows of bits (no union-find)
+     */
+    private static class SpanningTrial implements Trial {
+        private final double prob;
+        private final SweepPercolation p;
+
+        SpanningTrial(int rows, int cols, boolean wrap, double prob) {
+            this.prob = prob;
+            p = new SweepPercolation(rows, cols, wrap);
+        }
+
+        @Override
+        public double run(RandomGenerator random) {
+            p.openRandom(prob, random);
+            return p.percolates() ? 1.0 : 0.0;
+        }
+    }
+
+    /**
+     * RejectionTrial on a cubic lattice
+     */
+    private static class CubeRejectionTrial implements Trial {
+        private final int n;
+        private final Percolation3D p;
+
+        CubeRejectionTrial(int n) {
+            this.n = n;
+            p = new Percolation3D(n);
+        }
+
+        @Override
+        public double run(RandomGenerator random) {
+            int count = 0;
+            p.reset();
+            boolean bPercolate = false;
+
+            while (!bPercolate) {
+                int pI = random.nextInt(1, n + 1);
+                int pJ = random.nextInt(1, n + 1);
+                int pK = random.nextInt(1, n + 1);
+                if (!p.isOpen(pI, pJ, pK)) {
+                    p.open(pI, pJ, pK);
+                    ++count;
+                    bPercolate = p.percolates();
+                }
+            }
+            return (double) count / ((double) n * n * n);
+        }
+    }
+
+    /**
+     * PermutationTrial on a cubic lattice
+     */
+    private static class CubePermutationTrial implements Trial {
+        private final int n;
+        private final int[] order;
+        private final Percolation3D p;
+
+        CubePermutationTrial(int n) {
+            this.n = n;
+            order = new int[n * n * n];
+            p = new Percolation3D(n);
+        }
+
+        @Override
+        public double run(RandomGenerator random) {
+            final int sites = order.length;
+            final int layer = n * n;
+            for (int k = 0; k < sites; ++k) {
+                order[k] = k;
+            }
+
+            p.reset();
+            int count = 0;
+            do {
+                int r = random.nextInt(count, sites);
+                int site = order[r];
+                order[r] = order[count];
+                order[count] = site;
+                int rest = site % layer;
+                p.open(site / layer + 1, rest / n + 1, rest % n + 1);
+                ++count;
+            } while (!p.percolates());
+            return (double) count / (double) sites;
+        }
+    }
+
+    /**
+     * RejectionTrial over the bonds of a BondPercolation grid
+     */
+    private static class BondRejectionTrial implements Trial {
+        private final BondPercolation p;
+
+        BondRejectionTrial(int n) {
+            p = new BondPercolation(n);
+        }
+
+        @Override
+        public double run(RandomGenerator random) {
+            p.reset();
+            final int bonds = p.bonds();
+            while (!p.percolates()) {
+                p.openBond(random.nextInt(bonds));
+            }
+            return (double) p.numberOfOpenBonds() / (double) bonds;
+        }
+    }
+
+    /**
+     * PermutationTrial over the bonds of a BondPercolation grid
+     */
+    private static class BondPermutationTrial implements Trial {
+        private final int[] order;
+        private final BondPercolation p;
+
+        BondPermutationTrial(int n) {
+            order = new int[2 * n * (n - 1)];
+            p = new BondPercolation(n);
+        }
+
+        @Override
+        public double run(RandomGenerator random) {
+            final int bonds = order.length;
+            for (int k = 0; k < bonds; ++k) {
+                order[k] = k;
+            }
+
+            p.reset();
+            int count = 0;
+            while (!p.percolates()) {
+                int r = random.nextInt(count, bonds);
+                int bond = order[r];
+                order[r] = order[count];
+                order[count] = bond;
+                p.openBond(bond);
+                ++count;
+            }
+            return (double) count / (double) bonds;
+        }
+    }
+
+    /**
+     * fills order with the identity permutation and shuffles its first
+     * prefix entries with the same draws PermutationTrial makes
+     * 
+     * @param order
+     * @param random
+     * @param prefix
+     */
+    private static void shuffle(int[] order, RandomGenerator random,
+            int prefix) {
+        final int sites = order.length;
+        for (int k = 0; k < sites; ++k) {
+            order[k] = k;
+        }
+        for (int k = 0; k < prefix; ++k) {
+            int r = random.nextInt(k, sites);
+            int site = order[r];
+            order[r] = order[k];
+            order[k] = site;
+        }
+    }
+
+    /**
+     * threshold search over a fixed permutation without union-find: the
+     * number of sites at which the grid first percolates is found by binary
+     * search over the prefix length, each probe being one flood fill of a
+     * bitset grid from the top row
+     */
+    private static class Bisection implements Trial {
+        private final int rows;
+        private final int cols;
+        private final boolean wrap;
+        private final int[] order;
+        private final long[] open;
+        private final long[] seen;
+        private final int[] stack;
+
+        Bisection(int rows, int cols, boolean wrap) {
+            this.rows = rows;
+            this.cols = cols;
+            this.wrap = wrap;
+            order = new int[rows * cols];
+            open = new long[LongBitSet.wordCount(rows * cols)];
+            seen = new long[open.length];
+            stack = new int[rows * cols];
+        }
+
+        @Override
+        public double run(RandomGenerator random) {
+            final int sites = order.length;
+            shuffle(order, random, sites - 1);
+
+            // fewer than rows open sites can never span all rows
+            int lo = rows - 1;
+            int hi = sites;
+            while (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                if (percolates(mid)) {
+                    hi = mid;
+                } else {
+                    lo = mid;
+                }
+            }
+            return (double) hi / (double) sites;
+        }
+
+        /**
+         * does the grid with the first k sites of order open percolate?
+         */
+        private boolean percolates(int k) {
+            Arrays.fill(open, 0L);
+            Arrays.fill(seen, 0L);
+            for (int i = 0; i < k; ++i) {
+                int site = order[i];
+                open[site >>> 6] |= 1L << site;
+            }
+
+            int top = 0;
+            for (int site = 0; site < cols; ++site) {
+                if (visit(site)) {
+                    stack[top++] = site;
+                }
+            }
+            final int last = cols * (rows - 1);
+            while (top > 0) {
+                int site = stack[--top];
+                if (site >= last) {
+                    return true;
+                }
+                int col = site % cols;
+                int left = col > 0 ? site - 1 : wrap ? site + cols - 1 : -1;
+                int right = col < cols - 1 ? site + 1
+                        : wrap ? site - cols + 1 : -1;
+                if (left >= 0 && visit(left)) {
+                    stack[top++] = left;
+                }
+                if (right >= 0 && visit(right)) {
+                    stack[top++] = right;
+                }
+                if (site >= cols && visit(site - cols)) {
+                    stack[top++] = site - cols;
+                }
+                if (visit(site + cols)) {
+                    stack[top++] = site + cols;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * marks site as seen if it is open and was not seen yet
+         */
+        private boolean visit(int site) {
+            long bit = 1L << site;
+            int w = site >>> 6;
+            if ((open[w] & bit) == 0 || (seen[w] & bit) != 0) {
+                return false;
+            }
+            seen[w] |= bit;
+            return true;
+        }
+    }
+
+    /**
+     * the random generators of trials by algorithm name: SplittableRandom
+     * or any name known to RandomGeneratorFactory (Xoshiro256PlusPlus,
+     * L64X128MixRandom, ...); bounded draws such as nextInt(lo, hi) are
+     * unbiased for all of them
+     * 
+     * @param name
+     * @return
+     */
+    public static LongFunction<RandomGenerator> generators(String name) {
+        if (name.equals("SplittableRandom")) {
+            return SPLITTABLE;
+        }
+        final RandomGeneratorFactory<RandomGenerator> factory
+                = RandomGeneratorFactory.of(name);
+        return factory::create;
+    }
+
+    /**
+     * trials per fork-join leaf for a task of the given size: about four
+     * leaves per thread, or one leaf when running on the calling thread
+     * 
+     * @param size
+     * @param threads
+     * @return
+     */
+    private static int grain(int size, int threads) {
+        return threads == 1 ? Math.max(1, size)
+                : Math.max(1, size / (4 * threads));
+    }
+
+    /**
+     * seed of the random stream used by trial k (SplitMix64 finalizer)
+     * 
+     * @param seed
+     * @param k
+     * @return
+     */
+    private static long trialSeed(long seed, long k) {
+        long z = seed + (k + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long nextSeed() {
+        return ((long) StdRandom.uniform(Integer.MAX_VALUE) << 31)
+                ^ StdRandom.uniform(Integer.MAX_VALUE);
+    }
+
+    /**
+     * appends values[0, k) to a checkpoint as fork-join leaves complete,
+     * where k is the end of the longest run of completed trials from the
+     * start; an append is made once k has moved on by a chunk, and at the
+     * end
+     */
+    private static class CompletedPrefix {
+        private final TrialCheckpoint checkpoint;
+        private final double[] values;
+        private final int chunk;
+        // leaves completed beyond the prefix, lo -> hi
+        private final Map<Integer, Integer> pending
+                = new HashMap<Integer, Integer>();
+        private int prefix; // values[0, prefix) are complete
+        private int written; // values[0, written) are appended
+
+        CompletedPrefix(TrialCheckpoint checkpoint, double[] values, int from,
+                int chunk) {
+            this.checkpoint = checkpoint;
+            this.values = values;
+            this.chunk = chunk;
+            prefix = from;
+            written = from;
+        }
+
+        /**
+         * record that values[lo, hi) are complete
+         */
+        synchronized void completed(int lo, int hi) {
+            pending.put(lo, hi);
+            Integer next;
+            while ((next = pending.remove(prefix)) != null) {
+                prefix = next;
+            }
+            if (prefix - written >= chunk
+                    || (prefix == values.length && prefix > written)) {
+                checkpoint.append(values, written, prefix);
+                written = prefix;
+            }
+        }
+    }
+
+    /**
+     * one trial per thread for a whole run, obtained from the factory on the
+     * thread's first use, so that a run allocates one grid per worker however
+     * small its fork-join leaves are
+     */
+    private static class WorkerTrials implements Supplier<Trial> {
+        private final Supplier<? extends Trial> trials;
+        private final Map<Thread, Trial> byThread
+                = new ConcurrentHashMap<Thread, Trial>();
+
+        WorkerTrials(Supplier<? extends Trial> trials) {
+            this.trials = trials;
+        }
+
+        @Override
+        public Trial get() {
+            // only the current thread adds its own entry, so no race
+            Thread thread = Thread.currentThread();
+            Trial trial = byThread.get(thread);
+            if (trial == null) {
+                trial = trials.get();
+                byThread.put(thread, trial);
+            }
+            return trial;
+        }
+    }
+
+    /**
+     * fork-join task running trials base + [lo, hi) into values[lo, hi),
+     * reporting each completed leaf to prefix if it is not null
+     */
+    private static class Trials extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Supplier<? extends Trial> trials;
+        private final LongFunction<? extends RandomGenerator> generators;
+        private final long seed;
+        private final double[] values;
+        private final long base;
+        private final int lo;
+        private final int hi;
+        private final int grain;
+        private final CompletedPrefix prefix;
+
+        Trials(Supplier<? extends Trial> trials,
+                LongFunction<? extends RandomGenerator> generators, long seed,
+                double[] values, long base, int lo, int hi, int grain) {
+            this(trials, generators, seed, values, base, lo, hi, grain, null);
+        }
+
+        Trials(Supplier<? extends Trial> trials,
+                LongFunction<? extends RandomGenerator> generators, long seed,
+                double[] values, long base, int lo, int hi, int grain,
+                CompletedPrefix prefix) {
+            this.trials = trials;
+            this.generators = generators;
+            this.seed = seed;
+            this.values = values;
+            this.base = base;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+            this.prefix = prefix;
+        }
+
+        @Override
+        protected void compute() {
+            // a task run on the calling thread must not split: invokeAll
+            // outside a pool forks the halves into the common pool
+            if (hi - lo > grain && inForkJoinPool()) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(
+                        new Trials(trials, generators, seed, values, base, lo,
+                                mid, grain, prefix),
+                        new Trials(trials, generators, seed, values, base, mid,
+                                hi, grain, prefix));
+                return;
+            }
+            Trial trial = trials.get();
+            for (int k = lo; k < hi; ++k) {
+                values[k] = trial.run(
+                        generators.apply(trialSeed(seed, base + k)));
+            }
+            if (prefix != null) {
+                prefix.completed(lo, hi);
+            }
+        }
+    }
+
+    /**
+     * options of the test client taking a value (name=value)
+     */
+    private static final List<String> VALUED = Arrays.asList("cols", "dim",
+            "rng", "target", "checkpoint");
+
+    /**
+     * options of the test client given by name alone
+     */
+    private static final List<String> FLAGS = Arrays.asList("wrap", "bond",
+            "resume", "metrics");
+
+    /**
+     * split args into the options, wherever they appear, and the positional
+     * arguments, in order; a flag maps to the empty string
+     * 
+     * @param args
+     * @param options
+     * @return the positional arguments
+     */
+    private static List<String> parse(String[] args,
+            Map<String, String> options) {
+        List<String> positional = new ArrayList<String>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq >= 0 && VALUED.contains(arg.substring(0, eq))) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            } else if (FLAGS.contains(arg)) {
+                options.put(arg, "");
+            } else if (eq >= 0) {
+                throw new IllegalArgumentException("unknown option: " + arg);
+            } else {
+                positional.add(arg);
+            }
+        }
+        return positional;
+    }
+
     /**
      * test client
      * 
+     * usage: PercolationStats N T [seed] [threads] [strategy] [options]
+     * 
+     * options, which may come anywhere among the arguments: cols=C for an
+     * N-by-C grid, wrap to join its left and right edges, dim=3 for an
+     * N-by-N-by-N lattice, bond for bond percolation on an N-by-N grid,
+     * target=H to stop as soon as the 95% confidence half-width is at most H
+     * (T is then an upper bound on the trials), checkpoint=F to record
+     * completed trials in file F, resume to continue the run recorded in F
+     * (its seed is used), metrics to print union-find and timing counters
+     * after the run, rng=NAME to draw from another generator than
+     * SplittableRandom (e.g. Xoshiro256PlusPlus or L64X128MixRandom); cols,
+     * wrap and metrics apply to 2D site percolation only, and an option
+     * without effect in the chosen mode is rejected
+     * 
      * @param args
      */
     public static void main(String[] args) {
-        if (args.length < 2)
+        Map<String, String> options = new HashMap<String, String>();
+        List<String> positional = parse(args, options);
+        if (positional.size() < 2 || positional.size() > 5)
             throw new java.lang.IllegalArgumentException();
 
-        int N = Integer.parseInt(args[0]);
-        int T = Integer.parseInt(args[1]);
+        int N = Integer.parseInt(positional.get(0));
+        int T = Integer.parseInt(positional.get(1));
+        long seed = positional.size() > 2 ? Long.parseLong(positional.get(2))
+                : nextSeed();
+        int threads = positional.size() > 3
+                ? Integer.parseInt(positional.get(3))
+                : Runtime.getRuntime().availableProcessors();
+        Strategy strategy = positional.size() > 4
+                ? Strategy.valueOf(positional.get(4)) : Strategy.REJECTION;
+        int C = Integer.parseInt(options.getOrDefault("cols",
+                positional.get(0)));
+        boolean wrap = options.containsKey("wrap");
+        int dim = Integer.parseInt(options.getOrDefault("dim", "2"));
+        boolean bond = options.containsKey("bond");
+        String rng = options.getOrDefault("rng", "SplittableRandom");
+        LongFunction<RandomGenerator> generators = generators(rng);
 
-        if (N <= 0 || T <= 0)
+        if (N <= 0 || T <= 0 || threads <= 0 || C <= 0
+                || (dim != 2 && dim != 3))
             throw new IllegalArgumentException();
 
-        PercolationStats ps = new PercolationStats(N, T);
+        // the options that would have no effect in the chosen mode
+        if ((bond || dim == 3) && (options.containsKey("cols") || wrap
+                || options.containsKey("metrics")))
+            throw new IllegalArgumentException(
+                    "cols, wrap and metrics apply to 2D site percolation only");
+        if (bond && dim == 3)
+            throw new IllegalArgumentException(
+                    "bond applies to 2D percolation only");
+        if (options.containsKey("resume")
+                && !options.containsKey("checkpoint"))
+            throw new IllegalArgumentException("resume needs a checkpoint");
+
+        PercolationMetrics metrics = options.containsKey("metrics")
+                ? new PercolationMetrics() : null;
+
+        Supplier<Trial> trials = bond ? bondTrials(N, strategy)
+                : dim == 3 ? cubeTrials(N, strategy)
+                : siteTrials(N, C, wrap, strategy, metrics);
+        String target = options.get("target");
+        String checkpoint = options.get("checkpoint");
+        PercolationStats ps;
+        if (checkpoint != null) {
+            if (target != null)
+                throw new IllegalArgumentException();
+            String key = N + " " + strategy + " cols=" + C + " wrap=" + wrap
+                    + " dim=" + dim + " bond=" + bond
+                    + (rng.equals("SplittableRandom") ? "" : " rng=" + rng);
+            Path file = Paths.get(checkpoint);
+            boolean resume = options.containsKey("resume")
+                    && Files.exists(file);
+            try (TrialCheckpoint cp = resume ? TrialCheckpoint.resume(file)
+                    : TrialCheckpoint.create(file, seed, T, key)) {
+                if (!cp.key().equals(key))
+                    throw new IllegalArgumentException(
+                            checkpoint + " records a different experiment: "
+                                    + cp.key());
+                if (resume)
+                    StdOut.println("resuming after " + cp.completed().length
+                            + " of " + cp.trials() + " trials");
+                ps = new PercolationStats(trials, cp, threads, generators);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else if (target == null) {
+            ps = new PercolationStats(trials, T, seed, threads, generators);
+        } else {
+            ps = new PercolationStats(trials, Double.parseDouble(target), T,
+                    seed, threads, generators, (n, m, h) -> {
+                        if (n % 1024 == 0)
+                            StdOut.printf("%d trials: mean %.6f +- %.6f%n", n,
+                                    m, h);
+                    });
+            StdOut.println("trials                  = " + ps.trials());
+        }
         double mean = ps.mean();
         double stddev = ps.stddev();
 
@@ -108,5 +1206,7 @@ public class PercolationStats {
         StdOut.println("stddev                  = " + Double.toString(stddev));
         StdOut.println("95% confidence interval = " + Double.toString(confLow)
                 + ", " + Double.toString(confHigh));
+        if (metrics != null)
+            StdOut.print(metrics);
     }
 }
@@ -0,0 +1,121 @@
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * runs PercolationStats for a list of grid sizes in one process, so the JIT
+ * warm-up is paid once for the whole finite-size-scaling study, and prints
+ * one table row per grid size
+ * 
+ * usage: PercolationSweep T N1,N2,... [seed] [threads] [strategy] [csv|json]
+ * [p1,p2,...]
+ * 
+ * With a list of open probabilities, each row is instead the estimated
+ * spanning probability of one (N, p) pair (see SpanningProbability).
+ */
+public class PercolationSweep {
+
+    /**
+     * test client
+     * 
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length < 2)
+            throw new java.lang.IllegalArgumentException();
+
+        int T = Integer.parseInt(args[0]);
+        String[] sizes = args[1].split(",");
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 0L;
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+                : Runtime.getRuntime().availableProcessors();
+        PercolationStats.Strategy strategy = args.length > 4
+                ? PercolationStats.Strategy.valueOf(args[4])
+                : PercolationStats.Strategy.PERMUTATION;
+        boolean json = args.length > 5 && args[5].equals("json");
+        double[] p = args.length > 6 ? SpanningProbability.parse(args[6])
+                : null;
+
+        if (T <= 0 || threads <= 0)
+            throw new IllegalArgumentException();
+
+        if (p != null) {
+            spanning(T, sizes, p, seed, threads, json);
+            return;
+        }
+
+        if (json) {
+            StdOut.println("[");
+        } else {
+            StdOut.println("N,T,mean,stddev,confidenceLo,confidenceHi,seconds");
+        }
+        for (int i = 0; i < sizes.length; ++i) {
+            int N = Integer.parseInt(sizes[i].trim());
+            long start = System.nanoTime();
+            PercolationStats ps = new PercolationStats(N, T, seed, threads,
+                    strategy);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            if (json) {
+                StdOut.printf("  {\"N\": %d, \"T\": %d, \"mean\": %s, "
+                        + "\"stddev\": %s, \"confidenceLo\": %s, "
+                        + "\"confidenceHi\": %s, \"seconds\": %.3f}%s%n", N, T,
+                        json(ps.mean()), json(ps.stddev()),
+                        json(ps.confidenceLo()), json(ps.confidenceHi()),
+                        seconds, i < sizes.length - 1 ? "," : "");
+            } else {
+                StdOut.printf("%d,%d,%s,%s,%s,%s,%.3f%n", N, T, ps.mean(),
+                        ps.stddev(), ps.confidenceLo(), ps.confidenceHi(),
+                        seconds);
+            }
+        }
+        if (json) {
+            StdOut.println("]");
+        }
+    }
+
+    private static void spanning(int T, String[] sizes, double[] p,
+            long seed, int threads, boolean json) {
+        if (json) {
+            StdOut.println("[");
+        } else {
+            StdOut.println("N,T,p,probability,confidenceLo,confidenceHi,seconds");
+        }
+        for (int i = 0; i < sizes.length; ++i) {
+            int N = Integer.parseInt(sizes[i].trim());
+            for (int k = 0; k < p.length; ++k) {
+                long start = System.nanoTime();
+                SpanningProbability sp = new SpanningProbability(N, N, false,
+                        new double[] { p[k] }, T, seed, threads);
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                if (json) {
+                    boolean last = i == sizes.length - 1 && k == p.length - 1;
+                    StdOut.printf("  {\"N\": %d, \"T\": %d, \"p\": %s, "
+                            + "\"probability\": %s, \"confidenceLo\": %s, "
+                            + "\"confidenceHi\": %s, \"seconds\": %.3f}%s%n",
+                            N, T, json(p[k]), json(sp.probability(0)),
+                            json(sp.confidenceLo(0)),
+                            json(sp.confidenceHi(0)), seconds,
+                            last ? "" : ",");
+                } else {
+                    StdOut.printf("%d,%d,%s,%s,%s,%s,%.3f%n", N, T, p[k],
+                            sp.probability(0), sp.confidenceLo(0),
+                            sp.confidenceHi(0), seconds);
+                }
+            }
+        }
+        if (json) {
+            StdOut.println("]");
+        }
+    }
+
+    /**
+     * x as a JSON number, or null if it is NaN or infinite (as the
+     * standard deviation of a single trial is), which JSON cannot represent
+     * 
+     * @param x
+     * @return
+     */
+    private static String json(double x) {
+        return Double.isFinite(x) ? Double.toString(x) : "null";
+    }
+}
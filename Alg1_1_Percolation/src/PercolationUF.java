@@ -0,0 +1,206 @@
+import java.util.Arrays;
+
+/**
+ * union-find over the sites of a percolation system, kept in a single int[]
+ * 
+ * A non-negative entry is the parent of a site. A negative entry marks a root
+ * and packs, as ~(rank << 2 | flags), the rank of its tree together with
+ * whether the component touches the top and/or the bottom row. This replaces
+ * the two virtual sites (and the second "full" union-find that avoided
+ * backwash through the bottom one) of the textbook solution: a site is full
+ * if its root has the top flag, and the system percolates once some root has
+ * both flags.
+ */
+public class PercolationUF {
+
+    private static final int TOP = 1;
+    private static final int BOTTOM = 2;
+    private static final int FLAGS = TOP | BOTTOM;
+
+    private final int[] parent;
+    private boolean spans;
+    private PercolationMetrics metrics;
+
+    /**
+     * create n singleton components touching neither top nor bottom
+     * 
+     * @param n
+     */
+    public PercolationUF(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException();
+        }
+        parent = new int[n];
+        reset();
+    }
+
+    /**
+     * return to n singleton components touching neither top nor bottom
+     */
+    public void reset() {
+        Arrays.fill(parent, ~0);
+        spans = false;
+    }
+
+    /**
+     * count finds and unions in m from now on; null stops counting
+     * 
+     * @param m
+     */
+    public void setMetrics(PercolationMetrics m) {
+        metrics = m;
+    }
+
+    /**
+     * number of sites
+     * 
+     * @return
+     */
+    public int size() {
+        return parent.length;
+    }
+
+    /**
+     * root of the component containing p, halving the path on the way
+     * 
+     * @param p
+     * @return
+     */
+    public int find(int p) {
+        if (metrics != null) {
+            return countedFind(p);
+        }
+        int next = parent[p];
+        while (next >= 0) {
+            int grand = parent[next];
+            if (grand < 0) {
+                return next;
+            }
+            parent[p] = grand;
+            p = grand;
+            next = parent[p];
+        }
+        return p;
+    }
+
+    /**
+     * merge the components containing p and q (union by rank)
+     * 
+     * @param p
+     * @param q
+     */
+    public void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) {
+            return;
+        }
+        int packedP = ~parent[rootP];
+        int packedQ = ~parent[rootQ];
+        int flags = (packedP | packedQ) & FLAGS;
+        int rankP = packedP >>> 2;
+        int rankQ = packedQ >>> 2;
+
+        if (rankP < rankQ) {
+            parent[rootP] = rootQ;
+            parent[rootQ] = ~(rankQ << 2 | flags);
+        } else {
+            parent[rootQ] = rootP;
+            int rank = rankP == rankQ ? rankP + 1 : rankP;
+            parent[rootP] = ~(rank << 2 | flags);
+        }
+        if (flags == FLAGS) {
+            spans = true;
+        }
+        if (metrics != null) {
+            metrics.recordUnion();
+        }
+    }
+
+    /**
+     * mark the component containing p as touching the top row
+     * 
+     * @param p
+     */
+    public void connectTop(int p) {
+        mark(p, TOP);
+    }
+
+    /**
+     * mark the component containing p as touching the bottom row
+     * 
+     * @param p
+     */
+    public void connectBottom(int p) {
+        mark(p, BOTTOM);
+    }
+
+    /**
+     * is the component containing p connected to the top row?
+     * 
+     * @param p
+     * @return
+     */
+    public boolean connectedToTop(int p) {
+        return (~parent[find(p)] & TOP) != 0;
+    }
+
+    /**
+     * is the component containing p connected to the bottom row?
+     * 
+     * @param p
+     * @return
+     */
+    public boolean connectedToBottom(int p) {
+        return (~parent[find(p)] & BOTTOM) != 0;
+    }
+
+    /**
+     * does some component touch both the top and the bottom row?
+     * 
+     * @return
+     */
+    public boolean spans() {
+        return spans;
+    }
+
+    /**
+     * approximate heap size of this union-find in bytes
+     * 
+     * @return
+     */
+    public long memoryFootprint() {
+        return 16 + 16 + 4L * parent.length;
+    }
+
+    /**
+     * find() that also records the number of parent links it followed; kept
+     * apart so that the uninstrumented loop stays as small as it was
+     */
+    private int countedFind(int p) {
+        int hops = 0;
+        int next = parent[p];
+        while (next >= 0) {
+            ++hops;
+            int grand = parent[next];
+            if (grand < 0) {
+                break;
+            }
+            ++hops;
+            parent[p] = grand;
+            p = grand;
+            next = parent[p];
+        }
+        metrics.recordFind(hops);
+        return next >= 0 ? next : p;
+    }
+
+    private void mark(int p, int flag) {
+        int root = find(p);
+        int packed = ~parent[root] | flag;
+        parent[root] = ~packed;
+        if ((packed & FLAGS) == FLAGS) {
+            spans = true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * streaming mean and variance of a sequence of values (Welford's method),
+ * in constant memory however many values are added
+ */
+public class RunningStats {
+
+    private long count;
+    private double mean;
+    private double m2;
+
+    /**
+     * add one value
+     * 
+     * @param x
+     */
+    public void add(double x) {
+        ++count;
+        double delta = x - mean;
+        mean += delta / count;
+        m2 += delta * (x - mean);
+    }
+
+    /**
+     * number of values added
+     * 
+     * @return
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * sample mean; NaN if no value was added
+     * 
+     * @return
+     */
+    public double mean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * sample variance; NaN if fewer than two values were added
+     * 
+     * @return
+     */
+    public double var() {
+        return count < 2 ? Double.NaN : m2 / (count - 1);
+    }
+
+    /**
+     * sample standard deviation; NaN if fewer than two values were added
+     * 
+     * @return
+     */
+    public double stddev() {
+        return Math.sqrt(var());
+    }
+
+    /**
+     * half-width of the 95% confidence interval for the mean; NaN if fewer
+     * than two values were added
+     * 
+     * @return
+     */
+    public double halfWidth() {
+        return 1.96 * stddev() / Math.sqrt((double) count);
+    }
+}
@@ -0,0 +1,138 @@
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * estimates P(percolates | p), the probability that an R-by-C grid whose
+ * sites are open independently with probability p percolates, at a list of
+ * p values
+ * 
+ * Each worker thread allocates its grid once per p and resets it between
+ * trials, so no memory is allocated per trial. All p values use the same
+ * seed: trial k sees the same uniform draws at every p, so each sampled curve
+ * is monotone in p and differences between neighbouring p values have low
+ * variance.
+ */
+public class SpanningProbability {
+
+    private double[] p;
+    private double[] probability;
+    private double[] halfWidth;
+
+    /**
+     * run T trials at each of the given probabilities
+     * 
+     * @param R
+     * @param C
+     * @param wrap
+     * @param p
+     * @param T
+     * @param seed
+     * @param threads
+     */
+    public SpanningProbability(int R, int C, boolean wrap, double[] p, int T,
+            long seed, int threads) {
+        if (p == null || p.length == 0) {
+            throw new IllegalArgumentException();
+        }
+        this.p = p.clone();
+        probability = new double[p.length];
+        halfWidth = new double[p.length];
+        for (int k = 0; k < p.length; ++k) {
+            PercolationStats ps = new PercolationStats(
+                    PercolationStats.spanningTrials(R, C, wrap, p[k]), T, seed,
+                    threads);
+            probability[k] = ps.mean();
+            halfWidth[k] = ps.mean() - ps.confidenceLo();
+        }
+    }
+
+    /**
+     * number of probabilities sampled
+     * 
+     * @return
+     */
+    public int size() {
+        return p.length;
+    }
+
+    /**
+     * k-th open probability
+     * 
+     * @param k
+     * @return
+     */
+    public double p(int k) {
+        return p[k];
+    }
+
+    /**
+     * estimated spanning probability at p(k)
+     * 
+     * @param k
+     * @return
+     */
+    public double probability(int k) {
+        return probability[k];
+    }
+
+    /**
+     * low endpoint of the 95% confidence interval (normal approximation)
+     * 
+     * @param k
+     * @return
+     */
+    public double confidenceLo(int k) {
+        return probability[k] - halfWidth[k];
+    }
+
+    /**
+     * high endpoint of the 95% confidence interval (normal approximation)
+     * 
+     * @param k
+     * @return
+     */
+    public double confidenceHi(int k) {
+        return probability[k] + halfWidth[k];
+    }
+
+    /**
+     * parses a comma-separated list of probabilities
+     * 
+     * @param list
+     * @return
+     */
+    public static double[] parse(String list) {
+        String[] parts = list.split(",");
+        double[] p = new double[parts.length];
+        for (int k = 0; k < parts.length; ++k) {
+            p[k] = Double.parseDouble(parts[k].trim());
+        }
+        return p;
+    }
+
+    /**
+     * test client
+     * 
+     * usage: SpanningProbability N T p1,p2,... [seed] [threads]
+     * 
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length < 3)
+            throw new java.lang.IllegalArgumentException();
+
+        int N = Integer.parseInt(args[0]);
+        int T = Integer.parseInt(args[1]);
+        double[] p = parse(args[2]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 0L;
+        int threads = args.length > 4 ? Integer.parseInt(args[4])
+                : Runtime.getRuntime().availableProcessors();
+
+        SpanningProbability sp = new SpanningProbability(N, N, false, p, T,
+                seed, threads);
+        StdOut.println("p,probability,confidenceLo,confidenceHi");
+        for (int k = 0; k < sp.size(); ++k) {
+            StdOut.printf("%s,%s,%s,%s%n", sp.p(k), sp.probability(k),
+                    sp.confidenceLo(k), sp.confidenceHi(k));
+        }
+    }
+}
@@ -0,0 +1,313 @@
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * site percolation on an R-by-C grid kept purely as bits, for grids that
+ * are filled all at once (every site open with probability p) and then
+ * asked a single question: does it percolate?
+ * 
+ * Each row is a run of 64-bit words. Random sites are drawn 64 at a time,
+ * and percolation is decided by sweeping the set of full sites down and up
+ * the rows until nothing changes: a row takes the full sites of its
+ * neighbour row that are open in it, and these are spread along the row's
+ * runs of open sites with word arithmetic (adding the seeds to the open
+ * bits carries through each run they touch). No union-find is built; the
+ * grid costs 2 bits per site.
+ * 
+ * The word-level operations are plain long arithmetic rather than
+ * jdk.incubator.vector lanes: the incubator module would have to be added
+ * to every compile and run of this folder, and within a row each word
+ * depends on the carry out of the previous one, which does not map onto
+ * independent lanes anyway.
+ */
+public class SweepPercolation {
+
+    private static final int NONE = 0;
+    private static final int SPANS = 1;
+    private static final int ALL = 2;
+
+    private final int rows;
+    private final int cols;
+    private final boolean wrap;
+    private final int words; // per row
+    private final long lastMask; // valid bits of the last word of a row
+    private final long[] open;
+    private final long[] full;
+    private int swept; // NONE, SPANS (stopped early) or ALL
+    private boolean spans;
+
+    /**
+     * create R-by-C grid, with all sites blocked; if wrap is set, the left
+     * and right edges are joined
+     * 
+     * @param R
+     * @param C
+     * @param wrap
+     */
+    public SweepPercolation(int R, int C, boolean wrap) {
+        if (R <= 0 || C <= 0
+                || (long) R * LongBitSet.wordCount(C) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException();
+        }
+        rows = R;
+        cols = C;
+        this.wrap = wrap;
+        words = LongBitSet.wordCount(C);
+        lastMask = -1L >>> (64 * words - C);
+        open = new long[R * words];
+        full = new long[R * words];
+    }
+
+    /**
+     * open site (row i, column j) if it is not open already
+     * 
+     * @param i
+     * @param j
+     */
+    public void open(int i, int j) {
+        check(i, j);
+        open[(i - 1) * words + ((j - 1) >>> 6)] |= 1L << (j - 1);
+        swept = NONE;
+    }
+
+    /**
+     * replace the grid by one whose sites are open independently with
+     * probability p (rounded down to a multiple of 2^-32)
+     * 
+     * Each block of 64 sites takes one long from random as a seed; binary
+     * digit k (from the top) of the 32-bit uniform number of every site in
+     * the block is bit j of word k, a SplitMix64 hash of (seed, k). A site
+     * is open when its number is below p; the digits are compared from the
+     * top and the block is done as soon as every site is decided, about
+     * eight words on average, and after one word for p = 1/2. Since digit k
+     * of a site does not depend on p, the same random stream at a larger p
+     * opens a superset of the sites.
+     * 
+     * @param p
+     * @param random
+     */
+    public void openRandom(double p, RandomGenerator random) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException();
+        }
+        final long P = (long) Math.floor(p * 0x1p32);
+        final int low = P == 0 ? 32 : Long.numberOfTrailingZeros(P);
+        for (int i = 0; i < rows; ++i) {
+            final int base = i * words;
+            for (int w = 0; w < words; ++w) {
+                final long seed = random.nextLong();
+                long bits;
+                if (P >= 1L << 32) {
+                    bits = -1L;
+                } else {
+                    // sites whose digits so far equal those of P; below the
+                    // lowest set digit of P they can only end up >= P
+                    bits = 0;
+                    long equal = -1L;
+                    for (int k = 31; k >= low && equal != 0; --k) {
+                        long r = digits(seed, k);
+                        if ((P >>> k & 1) != 0) {
+                            bits |= equal & ~r;
+                            equal &= r;
+                        } else {
+                            equal &= ~r;
+                        }
+                    }
+                }
+                open[base + w] = w == words - 1 ? bits & lastMask : bits;
+            }
+        }
+        swept = NONE;
+    }
+
+    /**
+     * is site (row i, column j) open?
+     * 
+     * @param i
+     * @param j
+     * @return
+     */
+    public boolean isOpen(int i, int j) {
+        check(i, j);
+        return (open[(i - 1) * words + ((j - 1) >>> 6)] & 1L << (j - 1)) != 0;
+    }
+
+    /**
+     * is site (row i, column j) full?
+     * 
+     * @param i
+     * @param j
+     * @return
+     */
+    public boolean isFull(int i, int j) {
+        check(i, j);
+        if (swept != ALL) {
+            sweep(false);
+        }
+        return (full[(i - 1) * words + ((j - 1) >>> 6)] & 1L << (j - 1)) != 0;
+    }
+
+    /**
+     * number of open sites
+     * 
+     * @return
+     */
+    public int numberOfOpenSites() {
+        int count = 0;
+        for (long word : open) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * does the system percolate?
+     * 
+     * @return
+     */
+    public boolean percolates() {
+        if (swept == NONE) {
+            sweep(true);
+        }
+        return spans;
+    }
+
+    /**
+     * block all sites again, keeping the allocated storage
+     */
+    public void reset() {
+        Arrays.fill(open, 0);
+        swept = NONE;
+    }
+
+    /**
+     * approximate heap size of this object in bytes
+     * 
+     * @return
+     */
+    public long memoryFootprint() {
+        return 40 + 2 * (16 + 8L * open.length);
+    }
+
+    /**
+     * compute the full sites, stopping as soon as the bottom row is reached
+     * if early is set
+     */
+    private void sweep(boolean early) {
+        Arrays.fill(full, words, full.length, 0);
+        System.arraycopy(open, 0, full, 0, words); // runs of the top row
+        spans = rows == 1 ? any(0) : false;
+
+        // a sweep that adds nothing leaves a fixed point: the previous sweep
+        // already pulled everything in its own direction
+        boolean down = true;
+        boolean changed = true;
+        while (changed && !(early && spans)) {
+            changed = false;
+            if (down) {
+                for (int i = 1; i < rows; ++i) {
+                    changed |= pull(i, i - 1);
+                }
+            } else {
+                for (int i = rows - 2; i >= 0; --i) {
+                    changed |= pull(i, i + 1);
+                }
+            }
+            spans = any(rows - 1);
+            down = !down;
+        }
+        swept = changed ? SPANS : ALL;
+    }
+
+    /**
+     * add to row i the full sites of row from that are open in row i, then
+     * spread them along row i; true if row i gained any
+     */
+    private boolean pull(int i, int from) {
+        final int base = i * words;
+        final int other = from * words;
+        boolean grew = false;
+        for (int w = 0; w < words; ++w) {
+            long seeds = full[base + w] | (full[other + w] & open[base + w]);
+            if (seeds != full[base + w]) {
+                full[base + w] = seeds;
+                grew = true;
+            }
+        }
+        if (grew) {
+            spread(base);
+        }
+        return grew;
+    }
+
+    /**
+     * extend the full bits of the row at base to the whole runs of open
+     * sites containing them
+     * 
+     * For open bits x and seeds s inside x, x + s carries from the lowest
+     * seed of each run up to the bit past the run, so (((x + s) ^ x) | s) & x
+     * is each run from its lowest seed upwards. The downward half is the
+     * same on the bit-reversed words.
+     */
+    private void spread(int base) {
+        while (true) {
+            long carry = 0;
+            for (int w = 0; w < words; ++w) {
+                long x = open[base + w];
+                long s = full[base + w] | (carry & x);
+                long up = (((x + s) ^ x) | s) & x;
+                full[base + w] = up;
+                carry = up >>> 63;
+            }
+            carry = 0;
+            for (int w = words - 1; w >= 0; --w) {
+                long x = Long.reverse(open[base + w]);
+                long s = Long.reverse(full[base + w]) | (carry & x);
+                long down = (((x + s) ^ x) | s) & x;
+                full[base + w] = Long.reverse(down);
+                carry = down >>> 63;
+            }
+            if (!wrap || cols == 1) {
+                return;
+            }
+            // a run reaching one edge continues from the other
+            final int last = base + words - 1;
+            final long top = 1L << (cols - 1);
+            boolean first = (full[base] & 1) != 0;
+            boolean end = (full[last] & top) != 0;
+            if (first && !end && (open[last] & top) != 0) {
+                full[last] |= top;
+            } else if (end && !first && (open[base] & 1) != 0) {
+                full[base] |= 1;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private boolean any(int i) {
+        for (int w = i * words; w < (i + 1) * words; ++w) {
+            if (full[w] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * binary digit k of the uniform numbers of the 64 sites of a block
+     * (SplitMix64 finalizer of seed and k)
+     */
+    private static long digits(long seed, int k) {
+        long z = seed + (k + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private void check(int i, int j) {
+        if (i < 1 || j < 1 || i > rows || j > cols) {
+            throw new java.lang.IndexOutOfBoundsException();
+        }
+    }
+}
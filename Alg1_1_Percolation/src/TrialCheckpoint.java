@@ -0,0 +1,225 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * append-only binary file of the results of a PercolationStats run, so that
+ * a run that dies can be resumed where the file ends
+ * 
+ * Trial k draws from a stream derived only from (seed, k), so the seed and
+ * the number of completed trials are the whole random state: the file is a
+ * header (magic, version, seed, T and a caller-chosen key describing the
+ * experiment) followed by one double per completed trial, in trial order.
+ * Appends are handed to a background thread, so the trial workers never wait
+ * for the disk; a torn last value is dropped on resume.
+ */
+public class TrialCheckpoint implements Closeable {
+
+    private static final int MAGIC = 0x50455243; // "PERC"
+    private static final int VERSION = 1;
+
+    private final FileChannel channel;
+    private final long seed;
+    private final long trials;
+    private final String key;
+    private final double[] completed;
+    private final ExecutorService writer;
+    private volatile IOException failure;
+
+    private TrialCheckpoint(FileChannel channel, long seed, long trials,
+            String key, double[] completed) {
+        this.channel = channel;
+        this.seed = seed;
+        this.trials = trials;
+        this.key = key;
+        this.completed = completed;
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "checkpoint-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * start a new checkpoint file for T trials, replacing any existing one
+     * 
+     * @param file
+     * @param seed
+     * @param T
+     * @param key
+     * @return
+     * @throws IOException
+     */
+    public static TrialCheckpoint create(Path file, long seed, long T,
+            String key) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(seed);
+            out.writeLong(T);
+            out.writeUTF(key);
+            out.flush();
+            write(channel, ByteBuffer.wrap(bytes.toByteArray()));
+            channel.force(true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new TrialCheckpoint(channel, seed, T, key, new double[0]);
+    }
+
+    /**
+     * reopen an existing checkpoint file to continue appending to it
+     * 
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static TrialCheckpoint resume(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            DataInputStream in = new DataInputStream(
+                    Channels.newInputStream(channel));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a checkpoint file");
+            }
+            long seed = in.readLong();
+            long T = in.readLong();
+            String key = in.readUTF();
+            long header = channel.position();
+
+            int count = (int) Math.min(T, (channel.size() - header) / 8);
+            ByteBuffer buffer = ByteBuffer.allocate(count * 8);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, header + buffer.position()) < 0) {
+                    throw new IOException(file + " is truncated");
+                }
+            }
+            buffer.flip();
+            double[] completed = new double[count];
+            buffer.asDoubleBuffer().get(completed);
+
+            // drop a torn value and continue appending after the last whole one
+            channel.truncate(header + 8L * count);
+            channel.position(header + 8L * count);
+            return new TrialCheckpoint(channel, seed, T, key, completed);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * seed of the run
+     * 
+     * @return
+     */
+    public long seed() {
+        return seed;
+    }
+
+    /**
+     * total number of trials of the run
+     * 
+     * @return
+     */
+    public long trials() {
+        return trials;
+    }
+
+    /**
+     * description of the experiment given when the file was created
+     * 
+     * @return
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * results of the trials already in the file when it was opened
+     * 
+     * @return
+     */
+    public double[] completed() {
+        return completed.clone();
+    }
+
+    /**
+     * queue values[from, to) to be appended; they must be the results of the
+     * trials following those already written
+     * 
+     * @param values
+     * @param from
+     * @param to
+     * @throws UncheckedIOException if an earlier append failed (the values
+     *         since then are not in the file)
+     */
+    public void append(double[] values, int from, int to) {
+        IOException failed = failure;
+        if (failed != null) {
+            throw new UncheckedIOException(failed);
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate((to - from) * 8);
+        buffer.asDoubleBuffer().put(values, from, to - from);
+        writer.execute(() -> {
+            if (failure != null) {
+                return;
+            }
+            try {
+                write(channel, buffer);
+                channel.force(false);
+            } catch (IOException e) {
+                failure = e;
+            }
+        });
+    }
+
+    /**
+     * wait for the queued appends and close the file
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            while (!writer.awaitTermination(1, TimeUnit.SECONDS)) {
+                continue;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -1,9 +1,27 @@
 import java.util.Arrays;
 
+/**
+ * immutable N-by-N slider-puzzle board
+ * 
+ * Boards of up to 4-by-4 are packed into a single long, 4 bits per tile in
+ * row-major order (cell k in bits 4k..4k+3), so a board is one small object
+ * and a move is a couple of shifts. Larger boards keep a flat int[] of the
+ * tiles. Both forms cache the position of the blank square.
+ * 
+ * The Hamming and Manhattan distances are computed by a full scan only for
+ * boards built from an array; a neighbor inherits them from its parent and
+ * adjusts them for the one tile that moved.
+ */
 public class Board {
 
-    private int[][] blocks;
-    private int size;
+    private static final int PACKED_MAX = 4; // 16 cells * 4 bits = 64 bits
+
+    private final int size;
+    private final long packed; // tiles of a packed board, 0 otherwise
+    private final int[] tiles; // tiles of a larger board, null otherwise
+    private final int blank;
+    private final int hamming;
+    private final int manhattan;
 
     /**
      * construct a board from an N-by-N array of blocks (where blocks[i][j] =
@@ -12,19 +30,57 @@ public class Board {
      * @param blocks
      */
     public Board(int[][] blocks) {
-        this.blocks = copyArray(blocks);
         size = blocks.length;
-    }
+        boolean pack = size <= PACKED_MAX;
+        int zero = 0;
+        for (int i = 0; i < size; ++i) {
+            for (int j = 0; j < size; ++j) {
+                int value = blocks[i][j];
+                if (value == 0)
+                    zero = i * size + j;
+                if (value < 0 || value > 15)
+                    pack = false;
+            }
+        }
+        blank = zero;
 
-    private int[][] copyArray(int[][] source) {
-        int[][] target = new int[source.length][source.length];
+        int h = 0;
+        int m = 0;
+        for (int k = 0; k < size * size; ++k) {
+            int value = blocks[k / size][k % size];
+            if (value == 0)
+                continue;
+            if (value != k + 1)
+                h++;
+            m += distance(value, k);
+        }
+        hamming = h;
+        manhattan = m;
 
-        for (int i = 0; i < source.length; ++i) {
-            for (int j = 0; j < source.length; ++j) {
-                target[i][j] = source[i][j];
+        if (pack) {
+            long bits = 0;
+            for (int k = 0; k < size * size; ++k) {
+                bits |= (long) blocks[k / size][k % size] << (4 * k);
+            }
+            packed = bits;
+            tiles = null;
+        } else {
+            packed = 0;
+            tiles = new int[size * size];
+            for (int k = 0; k < tiles.length; ++k) {
+                tiles[k] = blocks[k / size][k % size];
             }
         }
-        return target;
+    }
+
+    private Board(int size, long packed, int[] tiles, int blank,
+            int hamming, int manhattan) {
+        this.size = size;
+        this.packed = packed;
+        this.tiles = tiles;
+        this.blank = blank;
+        this.hamming = hamming;
+        this.manhattan = manhattan;
     }
 
     /**
@@ -42,15 +98,7 @@ public class Board {
      * @return
      */
     public int hamming() {
-        int exp = 1;
-        int count = 0;
-        for (int i = 0; i < size; ++i) {
-            for (int j = 0; j < size; ++j) {
-                if (blocks[i][j] != exp++ && blocks[i][j] != 0)
-                    count++;
-            }
-        }
-        return count;
+        return hamming;
     }
 
     /**
@@ -59,18 +107,7 @@ public class Board {
      * @return
      */
     public int manhattan() {
-        int count = 0;
-        for (int i = 0; i < size; ++i) {
-            for (int j = 0; j < size; ++j) {
-                int value = blocks[i][j];
-                if (value == 0)
-                    continue;
-                int goalCol = (value - 1) % size;
-                int goalRow = (value - 1) / size;
-                count += Math.abs(i - goalRow) + Math.abs(j - goalCol);
-            }
-        }
-        return count;
+        return manhattan;
     }
 
     /**
@@ -79,22 +116,49 @@ public class Board {
      * @return
      */
     public boolean isGoal() {
-        int exp = 1;
-        for (int i = 0; i < size; ++i) {
-            for (int j = 0; j < size; ++j) {
-                if (blocks[i][j] != exp++ && (i != size - 1 || j != size - 1))
-                    return false;
-            }
+        final int last = size * size - 1;
+        for (int k = 0; k < last; ++k) {
+            if (tile(k) != k + 1)
+                return false;
         }
         return true;
     }
 
-    private int[][] swap(int[][] source, int fromR, int fromC, int toR, int toC) {
-        int[][] copy = copyArray(source);
-        int value = copy[toR][toC];
-        copy[toR][toC] = copy[fromR][fromC];
-        copy[fromR][fromC] = value;
-        return copy;
+    /**
+     * can the goal be reached from this board?
+     * 
+     * A move keeps the parity of the number of inversions (pairs of tiles
+     * out of order in row-major order, ignoring the blank) when N is odd; when
+     * N is even, a vertical move changes it along with the blank's row. So a
+     * board is solvable iff its inversion count is even for odd N, and iff
+     * inversions + row of the blank (from 0 at the top) is odd for even N.
+     * The inversions are counted with a Fenwick tree in O(N^2 log N).
+     * 
+     * @return
+     */
+    boolean isSolvable() {
+        final int cells = size * size;
+        int[] tree = new int[cells]; // counts of tiles 1..cells-1 seen
+        long inversions = 0;
+        int seen = 0;
+        for (int k = 0; k < cells; ++k) {
+            int value = tile(k);
+            if (value == 0)
+                continue;
+            if (value < 0 || value >= cells)
+                throw new IllegalArgumentException();
+            // tiles already seen that are larger than value
+            int smaller = 0;
+            for (int i = value; i > 0; i -= i & -i)
+                smaller += tree[i];
+            inversions += seen - smaller;
+            for (int i = value; i < cells; i += i & -i)
+                ++tree[i];
+            ++seen;
+        }
+        if (size % 2 == 1)
+            return inversions % 2 == 0;
+        return (inversions + blank / size) % 2 == 1;
     }
 
     /**
@@ -103,10 +167,10 @@ public class Board {
      * @return
      */
     public Board twin() {
-        if (blocks[0][0] != 0 && blocks[0][1] != 0) {
-            return new Board(swap(blocks, 0, 0, 0, 1));
+        if (tile(0) != 0 && tile(1) != 0) {
+            return swap(0, 1);
         } else
-            return new Board(swap(blocks, 1, 0, 1, 1));
+            return swap(size, size + 1);
     }
 
     /**
@@ -117,12 +181,38 @@ public class Board {
         if (y == null) return false;
         if (y.getClass() != this.getClass()) return false;
         Board that = (Board) y;
-        if (this.blocks.length != that.blocks.length) return false;
-        for (int row = 0; row < size; row++)
-            if (!Arrays.equals(this.blocks[row], that.blocks[row]))
-                return false;
-        return true;
+        return this.size == that.size && this.packed == that.packed
+                && Arrays.equals(this.tiles, that.tiles);
+    }
 
+    /**
+     * hash code consistent with equals
+     */
+    public int hashCode() {
+        if (tiles != null)
+            return Arrays.hashCode(tiles);
+        long h = packed * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * 64-bit key for hash tables of boards: the packed tiles themselves for
+     * boards of up to 4-by-4, so that equal keys mean equal boards; for
+     * larger boards a 64-bit hash of the tiles, so that two different boards
+     * share a key with probability about 2^-64 (a search keyed on it could
+     * then wrongly treat one as already seen)
+     * 
+     * @return
+     */
+    long key() {
+        if (tiles == null)
+            return packed;
+        long h = size;
+        for (int tile : tiles) {
+            h = (h ^ tile) * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 29;
+        }
+        return h;
     }
 
     /**
@@ -132,30 +222,18 @@ public class Board {
      */
     public Iterable<Board> neighbors() {
         Queue<Board> q = new Queue<Board>();
-        
-        int col = 0;
-        int row = 0;
-        boolean flag = false;
-        for (int i = 0; i < size; ++i) {
-            for (int j = 0; j < size; ++j) {
-                if (blocks[i][j] == 0) {
-                    row = i;
-                    col = j;
-                }
-                if (flag) break;
-            }
-            if (flag) break;
-        }
-        
+
+        int row = blank / size;
+        int col = blank % size;
         if (row > 0)
-            q.enqueue(new Board(swap(blocks, row, col, row - 1, col)));
+            q.enqueue(slide(blank - size));
         if (row < size - 1)
-            q.enqueue(new Board(swap(blocks, row, col, row + 1, col)));
+            q.enqueue(slide(blank + size));
         if (col > 0)
-            q.enqueue(new Board(swap(blocks, row, col, row, col - 1)));
+            q.enqueue(slide(blank - 1));
         if (col < size - 1)
-            q.enqueue(new Board(swap(blocks, row, col, row, col + 1)));
-        
+            q.enqueue(slide(blank + 1));
+
         return q;
     }
 
@@ -167,10 +245,61 @@ public class Board {
         str.append(size + "\n");
         for (int i = 0; i < size; ++i) {
             for (int j = 0; j < size; ++j) {
-                str.append(blocks[i][j] + " ");
+                str.append(tile(i * size + j) + " ");
             }
             str.append("\n");
         }
         return str.toString();
     }
+
+    /**
+     * tile in cell k (row-major, 0 for the blank)
+     */
+    int tile(int k) {
+        if (tiles != null)
+            return tiles[k];
+        return (int) (packed >>> (4 * k)) & 0xF;
+    }
+
+    /**
+     * Manhattan distance of tile value in cell k from its goal cell
+     */
+    private int distance(int value, int k) {
+        int goalCol = (value - 1) % size;
+        int goalRow = (value - 1) / size;
+        return Math.abs(k / size - goalRow) + Math.abs(k % size - goalCol);
+    }
+
+    /**
+     * the board with the tile in cell k moved into the blank next to it;
+     * only that tile's distances change
+     */
+    private Board slide(int k) {
+        int value = tile(k);
+        int h = hamming - (value != k + 1 ? 1 : 0)
+                + (value != blank + 1 ? 1 : 0);
+        int m = manhattan - distance(value, k) + distance(value, blank);
+        if (tiles != null) {
+            int[] copy = tiles.clone();
+            copy[blank] = value;
+            copy[k] = 0;
+            return new Board(size, 0, copy, k, h, m);
+        }
+        long bits = packed & ~(0xFL << (4 * k)) | (long) value << (4 * blank);
+        return new Board(size, bits, null, k, h, m);
+    }
+
+    /**
+     * the board with the tiles in cells a and b exchanged
+     */
+    private Board swap(int a, int b) {
+        int[][] blocks = new int[size][size];
+        for (int k = 0; k < size * size; ++k) {
+            blocks[k / size][k % size] = tile(k);
+        }
+        int t = blocks[a / size][a % size];
+        blocks[a / size][a % size] = blocks[b / size][b % size];
+        blocks[b / size][b % size] = t;
+        return new Board(blocks);
+    }
 }
@@ -0,0 +1,202 @@
+/**
+ * slider-puzzle solver by iterative-deepening A* (IDA*), for boards whose
+ * search space is too large to keep in memory, such as hard 4-by-4 and 5-by-5
+ * boards
+ * 
+ * Each iteration is a depth-first search that abandons a path as soon as
+ * moves + Manhattan distance exceeds a bound; the next iteration raises the
+ * bound to the smallest value that exceeded it. The search moves tiles in
+ * place on one mutable copy of the board and undoes each move on the way
+ * back, so memory is O(N^2 + moves) however many nodes are visited. The price
+ * is that transpositions are visited again on every path that reaches them.
+ * 
+ * Same API as Solver.
+ */
+public class IDASolver {
+
+    private static final int FOUND = -1;
+
+    private final int size;
+    private final int[] tiles; // the board being searched, row-major
+    private final int[] distance; // distance[v * cells + k]: tile v in cell k
+    private int blank;
+    private int manhattan;
+    private int[] path; // path[g]: blank cell after g moves
+    private long expansions;
+    private int moves = -1;
+    private final Board initial;
+
+    /**
+     * find a solution to the initial board (using the IDA* algorithm)
+     * 
+     * @param initial
+     */
+    public IDASolver(Board initial) {
+        this.initial = initial;
+        size = initial.dimension();
+        final int cells = size * size;
+        tiles = new int[cells];
+        for (int k = 0; k < cells; ++k) {
+            tiles[k] = initial.tile(k);
+            if (tiles[k] == 0)
+                blank = k;
+        }
+        distance = new int[cells * cells];
+        for (int v = 1; v < cells; ++v) {
+            for (int k = 0; k < cells; ++k) {
+                distance[v * cells + k] = Math.abs(k / size - (v - 1) / size)
+                        + Math.abs(k % size - (v - 1) % size);
+            }
+        }
+        manhattan = initial.manhattan();
+
+        if (!initial.isSolvable())
+            return;
+        int bound = manhattan;
+        while (true) {
+            path = new int[bound + 1];
+            path[0] = blank;
+            int next = search(0, bound, -1);
+            if (next == FOUND) {
+                moves = bound;
+                return;
+            }
+            bound = next;
+        }
+    }
+
+    /**
+     * depth-first search below the current board, reached in g moves with
+     * the blank last in cell from; FOUND if the goal is within bound,
+     * otherwise the smallest g + h beyond it
+     */
+    private int search(int g, int bound, int from) {
+        int f = g + manhattan;
+        if (f > bound)
+            return f;
+        if (manhattan == 0)
+            return FOUND;
+        ++expansions;
+
+        int min = Integer.MAX_VALUE;
+        final int here = blank;
+        final int row = here / size;
+        final int col = here % size;
+        for (int dir = 0; dir < 4; ++dir) {
+            int k;
+            if (dir == 0 && row > 0)
+                k = here - size;
+            else if (dir == 1 && row < size - 1)
+                k = here + size;
+            else if (dir == 2 && col > 0)
+                k = here - 1;
+            else if (dir == 3 && col < size - 1)
+                k = here + 1;
+            else
+                continue;
+            if (k == from)
+                continue; // do not undo the previous move
+
+            slide(k);
+            path[g + 1] = k;
+            int t = search(g + 1, bound, here);
+            if (t == FOUND)
+                return FOUND;
+            slide(here);
+            if (t < min)
+                min = t;
+        }
+        return min;
+    }
+
+    /**
+     * move the tile in cell k into the blank next to it
+     */
+    private void slide(int k) {
+        final int cells = tiles.length;
+        int value = tiles[k];
+        manhattan += distance[value * cells + blank]
+                - distance[value * cells + k];
+        tiles[blank] = value;
+        tiles[k] = 0;
+        blank = k;
+    }
+
+    /**
+     * is the initial board solvable?
+     * 
+     * @return
+     */
+    public boolean isSolvable() {
+        return moves >= 0;
+    }
+
+    /**
+     * min number of moves to solve initial board; -1 if no solution
+     * 
+     * @return
+     */
+    public int moves() {
+        return moves;
+    }
+
+    /**
+     * sequence of boards in a shortest solution; null if no solution
+     * 
+     * @return
+     */
+    public Iterable<Board> solution() {
+        if (!isSolvable())
+            return null;
+        Queue<Board> sequence = new Queue<Board>();
+        sequence.enqueue(initial);
+        Board board = initial;
+        for (int g = 1; g <= moves; ++g) {
+            for (Board neighbor : board.neighbors()) {
+                if (neighbor.tile(path[g]) == 0) {
+                    board = neighbor;
+                    break;
+                }
+            }
+            sequence.enqueue(board);
+        }
+        return sequence;
+    }
+
+    /**
+     * number of search nodes expanded, over all iterations
+     * 
+     * @return
+     */
+    long expansions() {
+        return expansions;
+    }
+
+    /**
+     * solve a slider puzzle (same input and output as Solver)
+     * 
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length == 0)
+            return;
+        In in = new In(args[0]);
+
+        int N = in.readInt();
+        int[][] blocks = new int[N][N];
+        for (int i = 0; i < N; i++)
+            for (int j = 0; j < N; j++)
+                blocks[i][j] = in.readInt();
+        Board initial = new Board(blocks);
+
+        IDASolver solver = new IDASolver(initial);
+
+        if (!solver.isSolvable())
+            StdOut.println("No solution possible");
+        else {
+            StdOut.println("Minimum number of moves = " + solver.moves());
+            for (Board board : solver.solution())
+                StdOut.println(board);
+        }
+    }
+}
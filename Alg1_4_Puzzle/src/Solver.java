@@ -1,6 +1,7 @@
 public class Solver {
 
     private Node solved;
+    private int expansions;
 
     private class Node implements Comparable<Node> {
         private final int priority;
@@ -31,7 +32,9 @@ public class Solver {
      * @param initial
      */
     public Solver(Board initial) {
-        if (initial.isGoal()) {
+        if (!initial.isSolvable()) {
+            solved = null;
+        } else if (initial.isGoal()) {
             solved = new Node(initial, null);
         } else {
             solved = solve(initial);
@@ -39,30 +42,104 @@ public class Solver {
     }
 
     private Node solve(Board initial) {
-        Board twin = initial.twin();
-
-        MinPQ<Node> mainQueue = new MinPQ<Node>();
-        MinPQ<Node> twinQueue = new MinPQ<Node>();
-        mainQueue.insert(new Node(initial, null));
-        twinQueue.insert(new Node(twin, null));
+        MinPQ<Node> queue = new MinPQ<Node>();
+        BestMoves seen = new BestMoves();
+        queue.insert(new Node(initial, null));
+        seen.put(initial.key(), 0);
         while (true) {
-            Node prev = nextStep(mainQueue);
+            Node prev = nextStep(queue, seen);
             if (prev.board.isGoal())
                 return prev;
-            if (nextStep(twinQueue).board.isGoal())
-                return null;
         }
     }
 
-    private Node nextStep(MinPQ<Node> queue) {
+    /**
+     * expand the best node of the queue; a neighbor is only queued if no
+     * shorter or equal path to it was queued before, and queue entries
+     * superseded by a shorter path are dropped when they come up
+     */
+    private Node nextStep(MinPQ<Node> queue, BestMoves seen) {
         Node min = queue.delMin();
+        while (min.moves > seen.get(min.board.key()))
+            min = queue.delMin();
+        ++expansions;
         for (Board neighbor : min.board.neighbors()) {
-            if (min.prev == null || !neighbor.equals(min.prev.board))
+            long key = neighbor.key();
+            if (min.moves + 1 < seen.get(key)) {
+                seen.put(key, min.moves + 1);
                 queue.insert(new Node(neighbor, min));
+            }
         }
         return min;
     }
 
+    /**
+     * fewest moves found so far to each board, by Board.key(), in an
+     * open-addressing table of primitive keys and values
+     */
+    private static class BestMoves {
+        private long[] keys = new long[1 << 10];
+        private int[] moves = new int[1 << 10];
+        private int size;
+        private boolean hasZero; // key 0 marks empty slots
+        private int zeroMoves;
+
+        int get(long key) {
+            if (key == 0)
+                return hasZero ? zeroMoves : Integer.MAX_VALUE;
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask);; i = (i + 1) & mask) {
+                if (keys[i] == key)
+                    return moves[i];
+                if (keys[i] == 0)
+                    return Integer.MAX_VALUE;
+            }
+        }
+
+        void put(long key, int value) {
+            if (key == 0) {
+                hasZero = true;
+                zeroMoves = value;
+                return;
+            }
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != 0 && keys[i] != key)
+                i = (i + 1) & mask;
+            if (keys[i] == 0) {
+                keys[i] = key;
+                if (2 * ++size > keys.length) {
+                    moves[i] = value;
+                    grow();
+                    return;
+                }
+            }
+            moves[i] = value;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldMoves = moves;
+            keys = new long[2 * oldKeys.length];
+            moves = new int[2 * oldKeys.length];
+            int mask = keys.length - 1;
+            for (int k = 0; k < oldKeys.length; ++k) {
+                if (oldKeys[k] == 0)
+                    continue;
+                int i = slot(oldKeys[k], mask);
+                while (keys[i] != 0)
+                    i = (i + 1) & mask;
+                keys[i] = oldKeys[k];
+                moves[i] = oldMoves[k];
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & mask;
+        }
+    }
+
     /**
      * is the initial board solvable?
      * 
@@ -104,6 +181,16 @@ public class Solver {
         }
     }
 
+    /**
+     * number of search nodes expanded (removed from a queue and their
+     * neighbors generated)
+     * 
+     * @return
+     */
+    int expansions() {
+        return expansions;
+    }
+
     /**
      * solve a slider puzzle (given below)
      * 
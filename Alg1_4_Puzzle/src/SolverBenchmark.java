@@ -0,0 +1,110 @@
+import java.util.Arrays;
+
+/**
+ * times Solver (A*) or IDASolver (IDA*) on seeded random 4-by-4 boards, or on
+ * the given files, and reports search-node expansions per second
+ * 
+ * The random boards are random walks of the blank away from the goal (never
+ * undoing the previous move), so they are always solvable.
+ * 
+ * usage: SolverBenchmark [astar|ida] [count] [steps] [seed] or
+ * SolverBenchmark [astar|ida] file...
+ */
+public class SolverBenchmark {
+
+    /**
+     * N-by-N board reached from the goal by a random walk of the blank
+     * 
+     * @param N
+     * @param steps
+     * @return
+     */
+    public static Board randomBoard(int N, int steps) {
+        int[][] blocks = new int[N][N];
+        for (int k = 0; k < N * N - 1; ++k)
+            blocks[k / N][k % N] = k + 1;
+        int row = N - 1;
+        int col = N - 1;
+        int last = -1;
+        for (int s = 0; s < steps; ++s) {
+            int dir = StdRandom.uniform(4);
+            if (dir == (last ^ 1))
+                dir = last; // do not undo the previous move
+            int r = row + (dir == 0 ? -1 : dir == 1 ? 1 : 0);
+            int c = col + (dir == 2 ? -1 : dir == 3 ? 1 : 0);
+            if (r < 0 || c < 0 || r >= N || c >= N) {
+                --s;
+                continue;
+            }
+            blocks[row][col] = blocks[r][c];
+            blocks[r][c] = 0;
+            row = r;
+            col = c;
+            last = dir;
+        }
+        return new Board(blocks);
+    }
+
+    private static Board read(String file) {
+        In in = new In(file);
+        int N = in.readInt();
+        int[][] blocks = new int[N][N];
+        for (int i = 0; i < N; i++)
+            for (int j = 0; j < N; j++)
+                blocks[i][j] = in.readInt();
+        return new Board(blocks);
+    }
+
+    private static void run(Board[] boards, boolean ida, boolean print) {
+        long expansions = 0;
+        long moves = 0;
+        Stopwatch watch = new Stopwatch();
+        for (Board board : boards) {
+            if (ida) {
+                IDASolver solver = new IDASolver(board);
+                expansions += solver.expansions();
+                moves += solver.moves();
+            } else {
+                Solver solver = new Solver(board);
+                expansions += solver.expansions();
+                moves += solver.moves();
+            }
+        }
+        double seconds = watch.elapsedTime();
+        if (print)
+            StdOut.printf("%d boards, %d moves, %d expansions, %.3fs, "
+                    + "%.0f expansions/s%n", boards.length, moves, expansions,
+                    seconds, expansions / seconds);
+    }
+
+    /**
+     * test client
+     * 
+     * @param args
+     */
+    public static void main(String[] args) {
+        boolean ida = false;
+        if (args.length > 0
+                && (args[0].equals("astar") || args[0].equals("ida"))) {
+            ida = args[0].equals("ida");
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        Board[] boards;
+        if (args.length > 0 && !args[0].matches("\\d+")) {
+            boards = new Board[args.length];
+            for (int k = 0; k < args.length; ++k)
+                boards[k] = read(args[k]);
+        } else {
+            int count = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+            int steps = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+            StdRandom.setSeed(args.length > 2 ? Long.parseLong(args[2])
+                    : 20151003L);
+            boards = new Board[count];
+            for (int k = 0; k < count; ++k)
+                boards[k] = randomBoard(4, steps);
+        }
+
+        run(boards, ida, false); // warm-up
+        run(boards, ida, true);
+    }
+}